@@ -0,0 +1,71 @@
+package com.forman.limo;
+
+import com.forman.limo.actions.DeleteAction;
+import com.forman.limo.actions.MoveDownAction;
+import com.forman.limo.actions.MoveUpAction;
+import com.forman.limo.actions.UndoableAction;
+import com.forman.limo.data.Project;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Each action is undone again, so that all invocations start from the same album
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ActionBenchmark {
+
+    @Param({"10000", "100000"})
+    public int fileCount;
+
+    @Param({"10", "1000"})
+    public int selectionStep;
+
+    private Project project;
+    private List<Path> selectedFiles;
+
+    @Setup
+    public void setUp() {
+        project = BenchmarkData.createProject(fileCount, false);
+        selectedFiles = BenchmarkData.selectFiles(project, selectionStep);
+        project.selectedImageFiles.setAll(selectedFiles);
+    }
+
+    @Benchmark
+    public boolean moveUp() throws Exception {
+        return callAndUndo(new MoveUpAction(project, selectedFiles, false));
+    }
+
+    @Benchmark
+    public boolean moveDown() throws Exception {
+        return callAndUndo(new MoveDownAction(project, selectedFiles, false));
+    }
+
+    @Benchmark
+    public boolean delete() throws Exception {
+        return callAndUndo(new DeleteAction(project, selectedFiles));
+    }
+
+    private static boolean callAndUndo(UndoableAction action) throws Exception {
+        boolean done = action.call();
+        if (done) {
+            action.undo();
+        }
+        return done;
+    }
+}
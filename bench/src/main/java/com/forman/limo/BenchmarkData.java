@@ -0,0 +1,90 @@
+package com.forman.limo;
+
+import com.drew.lang.Rational;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.forman.limo.data.ImageItem;
+import com.forman.limo.data.ImageMetadata;
+import com.forman.limo.data.Project;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// Synthetic albums for the benchmarks. All data derives from fixed seeds, so that results of
+// different commits are comparable.
+class BenchmarkData {
+
+    static final long SEED = 4711;
+
+    static final Path ALBUM_DIR = Paths.get(System.getProperty("java.io.tmpdir"), "limo-bench").toAbsolutePath().normalize();
+
+    // Files of 100 per folder, like imported from cameras, in shuffled order
+    static List<Path> createFiles(int count) {
+        ArrayList<Path> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            files.add(ALBUM_DIR.resolve(String.format("DCIM/%03dCANON/IMG_%05d.JPG", 100 + i / 100, i)));
+        }
+        Collections.shuffle(files, new Random(SEED));
+        return files;
+    }
+
+    static Project createProject(int fileCount, boolean withMetadata) {
+        Project project = new Project();
+        List<Path> files = createFiles(fileCount);
+        Random random = new Random(SEED);
+        project.update(() -> {
+            project.addFiles(files);
+            if (withMetadata) {
+                for (Path file : files) {
+                    ImageMetadata metadata = ImageMetadata.of(createMetadata(random));
+                    project.imageItems.put(file, new ImageItem(file, null, metadata));
+                }
+            }
+        });
+        return project;
+    }
+
+    // Every step-th file of the album, in album order
+    static List<Path> selectFiles(Project project, int step) {
+        ArrayList<Path> files = new ArrayList<>();
+        for (int i = step / 2; i < project.imageFiles.size(); i += step) {
+            files.add(project.imageFiles.get(i));
+        }
+        return files;
+    }
+
+    // Exif of a typical camera JPEG: dates, dimensions, exposure, a maker note and a thumbnail
+    static Metadata createMetadata(Random random) {
+        String dateTime = String.format("2016:%02d:%02d %02d:%02d:%02d",
+                1 + random.nextInt(12), 1 + random.nextInt(28),
+                random.nextInt(24), random.nextInt(60), random.nextInt(60));
+        Metadata metadata = new Metadata();
+        ExifIFD0Directory ifd0Directory = new ExifIFD0Directory();
+        ifd0Directory.setString(ExifIFD0Directory.TAG_MAKE, "Canon");
+        ifd0Directory.setString(ExifIFD0Directory.TAG_MODEL, "Canon EOS 5D Mark III");
+        ifd0Directory.setInt(ExifIFD0Directory.TAG_ORIENTATION, 1 + random.nextInt(8));
+        ifd0Directory.setRational(ExifIFD0Directory.TAG_X_RESOLUTION, new Rational(72, 1));
+        ifd0Directory.setRational(ExifIFD0Directory.TAG_Y_RESOLUTION, new Rational(72, 1));
+        ifd0Directory.setString(ExifIFD0Directory.TAG_DATETIME, dateTime);
+        metadata.addDirectory(ifd0Directory);
+        ExifSubIFDDirectory subIFDDirectory = new ExifSubIFDDirectory();
+        subIFDDirectory.setString(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL, dateTime);
+        subIFDDirectory.setString(ExifSubIFDDirectory.TAG_DATETIME_DIGITIZED, dateTime);
+        subIFDDirectory.setInt(ExifSubIFDDirectory.TAG_EXIF_IMAGE_WIDTH, 5760);
+        subIFDDirectory.setInt(ExifSubIFDDirectory.TAG_EXIF_IMAGE_HEIGHT, 3840);
+        subIFDDirectory.setInt(ExifSubIFDDirectory.TAG_ISO_EQUIVALENT, 100 << random.nextInt(6));
+        subIFDDirectory.setRational(ExifSubIFDDirectory.TAG_EXPOSURE_TIME, new Rational(1, 30 << random.nextInt(6)));
+        subIFDDirectory.setRational(ExifSubIFDDirectory.TAG_FNUMBER, new Rational(28 + random.nextInt(100), 10));
+        subIFDDirectory.setRational(ExifSubIFDDirectory.TAG_FOCAL_LENGTH, new Rational(24 + random.nextInt(81), 1));
+        byte[] makernote = new byte[4000];
+        random.nextBytes(makernote);
+        subIFDDirectory.setByteArray(ExifSubIFDDirectory.TAG_MAKERNOTE, makernote);
+        metadata.addDirectory(subIFDDirectory);
+        return metadata;
+    }
+}
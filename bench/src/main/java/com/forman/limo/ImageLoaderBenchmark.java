@@ -0,0 +1,102 @@
+package com.forman.limo;
+
+import javafx.scene.image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// What ImageLoaderTask does per file, without the FX application thread: reading the metadata
+// and decoding the image through the same reader. Time per file of a generated JPEG corpus.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dprism.order=sw"})
+@State(Scope.Benchmark)
+public class ImageLoaderBenchmark {
+
+    private static final int FILE_COUNT = 20;
+    private static final int IMAGE_WIDTH = 3000;
+    private static final int IMAGE_HEIGHT = 2000;
+
+    // 0 decodes the full image
+    @Param({"200", "0"})
+    public double requestedSize;
+
+    private Path corpusDir;
+    private List<Path> files;
+
+    @Setup
+    public void setUp() throws IOException {
+        corpusDir = Files.createTempDirectory("limo-bench");
+        files = new ArrayList<>(FILE_COUNT);
+        Random random = new Random(BenchmarkData.SEED);
+        for (int i = 0; i < FILE_COUNT; i++) {
+            Path file = corpusDir.resolve(String.format("IMG_%04d.JPG", i));
+            ImageIO.write(createImage(random), "jpg", file.toFile());
+            files.add(file);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(corpusDir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public void load(Blackhole blackhole) throws Exception {
+        for (Path file : files) {
+            try (ImageFileReader reader = new ImageFileReader(file)) {
+                blackhole.consume(reader.readMetadata());
+                Image image = ImageLoaderTask.decode(file, reader, requestedSize);
+                if (image.isError()) {
+                    throw new IOException("failed to decode " + file, image.getException());
+                }
+                blackhole.consume(image);
+            }
+        }
+    }
+
+    // Smooth gradients with noise, so that files compress like photos rather than like graphics
+    private static BufferedImage createImage(Random random) {
+        BufferedImage image = new BufferedImage(IMAGE_WIDTH, IMAGE_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int r0 = random.nextInt(256);
+        int g0 = random.nextInt(256);
+        int b0 = random.nextInt(256);
+        for (int y = 0; y < IMAGE_HEIGHT; y++) {
+            for (int x = 0; x < IMAGE_WIDTH; x++) {
+                int noise = random.nextInt(32);
+                int r = (r0 + 128 * x / IMAGE_WIDTH + noise) & 0xFF;
+                int g = (g0 + 128 * y / IMAGE_HEIGHT + noise) & 0xFF;
+                int b = (b0 + 64 * (x + y) / (IMAGE_WIDTH + IMAGE_HEIGHT) + noise) & 0xFF;
+                image.setRGB(x, y, r << 16 | g << 8 | b);
+            }
+        }
+        return image;
+    }
+}
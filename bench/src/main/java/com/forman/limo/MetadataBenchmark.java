@@ -0,0 +1,50 @@
+package com.forman.limo;
+
+import com.drew.metadata.Metadata;
+import com.forman.limo.data.ImageMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Conversion of the metadata read from image files into the album's compact form, time per file
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MetadataBenchmark {
+
+    private static final int FILE_COUNT = 100;
+
+    private Metadata[] metadata;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkData.SEED);
+        metadata = new Metadata[FILE_COUNT];
+        for (int i = 0; i < metadata.length; i++) {
+            metadata[i] = BenchmarkData.createMetadata(random);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public void convert(Blackhole blackhole) {
+        for (Metadata m : metadata) {
+            blackhole.consume(ImageMetadata.of(m));
+        }
+    }
+}
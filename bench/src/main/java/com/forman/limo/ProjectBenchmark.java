@@ -0,0 +1,85 @@
+package com.forman.limo;
+
+import com.forman.limo.data.Project;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ProjectBenchmark {
+
+    @Param({"10000", "100000"})
+    public int fileCount;
+
+    private Project project;
+    private List<Path> selectedFiles;
+    private Path projectFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        project = BenchmarkData.createProject(fileCount, true);
+        // Metadata is only indexed for existing files
+        for (Path file : project.imageFiles) {
+            Files.createDirectories(file.getParent());
+            if (!Files.exists(file)) {
+                Files.createFile(file);
+            }
+            project.getImageItem(file).metadata.recordFileState(file);
+        }
+        // A typical multi-selection is small compared to the album
+        selectedFiles = BenchmarkData.selectFiles(project, fileCount / 1000);
+        projectFile = Files.createTempFile("limo-bench", ".limo");
+        project.saveAs(projectFile.toString());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(projectFile);
+        try (Stream<Path> paths = Files.walk(BenchmarkData.ALBUM_DIR)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Integer> getImageFileIndexes() {
+        return project.getImageFileIndexes(selectedFiles);
+    }
+
+    @Benchmark
+    public Project saveAs() throws IOException {
+        project.saveAs(projectFile.toString());
+        return project;
+    }
+
+    @Benchmark
+    public Project open() throws IOException {
+        Project openedProject = new Project();
+        openedProject.open(projectFile.toString());
+        return openedProject;
+    }
+}
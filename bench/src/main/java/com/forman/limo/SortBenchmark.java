@@ -0,0 +1,59 @@
+package com.forman.limo;
+
+import com.forman.limo.actions.SortyByAction;
+import com.forman.limo.data.Project;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SortBenchmark {
+
+    @Param({"10000", "100000"})
+    public int fileCount;
+
+    @Param({"Filename", "Date/Time Original"})
+    public String tagName;
+
+    private Project project;
+    private SortyByAction.ImageFileComparatorFactory comparatorFactory;
+
+    @Setup
+    public void setUp() {
+        project = BenchmarkData.createProject(fileCount, true);
+        comparatorFactory = tagName.equals(SortyByAction.FILENAME.getTagName()) ? SortyByAction.FILENAME : SortyByAction.DATE_TIME_ORIGINAL;
+    }
+
+    // Sorts the shuffled album and restores its order
+    @Benchmark
+    public boolean sortBy() throws Exception {
+        SortyByAction action = new SortyByAction(project, comparatorFactory);
+        boolean done = action.call();
+        if (done) {
+            action.undo();
+        }
+        return done;
+    }
+
+    // Extraction of the sort keys only
+    @Benchmark
+    public int[] createRanks() {
+        return comparatorFactory.createRanks(project, project.imageFiles);
+    }
+}
@@ -0,0 +1,63 @@
+package com.forman.limo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Target file names of copy and rename, time per file
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class StringReplacerBenchmark {
+
+    private static final int FILE_COUNT = 1000;
+
+    @Param({"IMAG_{000N}_{NAME}", "{YEAR}-{MONTH}-{DAY}_{0000N}", "album"})
+    public String pattern;
+
+    private Map<String, String> replacements;
+    private StringReplacer.Template template;
+
+    @Setup
+    public void setUp() {
+        replacements = new HashMap<>();
+        replacements.put("{NAME}", "IMG_4711");
+        replacements.put("{YEAR}", "2016");
+        replacements.put("{MONTH}", "08");
+        replacements.put("{DAY}", "09");
+        template = StringReplacer.compile(pattern);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public void replace(Blackhole blackhole) {
+        for (int i = 0; i < FILE_COUNT; i++) {
+            blackhole.consume(StringReplacer.replace(pattern, i, replacements));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public void render(Blackhole blackhole) {
+        for (int i = 0; i < FILE_COUNT; i++) {
+            blackhole.consume(template.render(i, replacements));
+        }
+    }
+}
@@ -4,12 +4,22 @@ import javafx.concurrent.Service;
 import javafx.concurrent.Task;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.forman.limo.AppInfo.DEBUG;
 
 
 public class CopyAndRenameImagesService extends Service<Void> {
@@ -18,6 +28,9 @@ public class CopyAndRenameImagesService extends Service<Void> {
     private Path directory;
     private String pattern;
     private int startIndex;
+    private int workerCount = 1;
+    private boolean incremental;
+    private boolean linkFiles;
 
     public static Map<String, String> getReplacements(String nameReplacement, String formatReplacement, Map<String, String> replacements) {
         if (replacements == null) {
@@ -28,6 +41,32 @@ public class CopyAndRenameImagesService extends Service<Void> {
         return replacements;
     }
 
+    // Whether the directory contains a previous export that can be updated incrementally
+    public static boolean isExportDirectory(Path directory) {
+        return ExportManifest.exists(directory);
+    }
+
+    // Whether copying the files into the directory would overwrite files that were not written by a
+    // previous export, or have been changed since
+    public static boolean overwritesOtherFiles(List<Path> files, Path directory, String pattern, int startIndex) {
+        String[] names = directory.toFile().list();
+        if (names == null || names.length == 0) {
+            return false;
+        }
+        Set<String> existingNames = new HashSet<>(Arrays.asList(names));
+        ExportManifest manifest = ExportManifest.load(directory);
+        for (Path targetFile : CopyAndRenameImagesTask.getTargetFiles(files.toArray(new Path[files.size()]), directory, pattern, startIndex)) {
+            String name = targetFile.getFileName().toString();
+            if (existingNames.contains(name)) {
+                ExportManifest.Entry entry = manifest.get(name);
+                if (entry == null || !ExportManifest.isTargetUpToDate(entry, targetFile)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public void setFiles(List<Path> files) {
         this.files = files;
     }
@@ -42,65 +81,293 @@ public class CopyAndRenameImagesService extends Service<Void> {
 
     @Override
     protected Task<Void> createTask() {
-        return new CopyAndRenameImagesTask(files.toArray(new Path[files.size()]), directory, pattern, startIndex);
+        return new CopyAndRenameImagesTask(files.toArray(new Path[files.size()]), directory, pattern, startIndex, workerCount, incremental, linkFiles);
     }
 
     public void setStartIndex(int startIndex) {
         this.startIndex = startIndex;
     }
+
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public void setLinkFiles(boolean linkFiles) {
+        this.linkFiles = linkFiles;
+    }
 }
 
 class CopyAndRenameImagesTask extends Task<Void> {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final long MESSAGE_INTERVAL = 250_000_000L;
+
     private final Path[] files;
     private final Path directory;
     private final String pattern;
     private final int startIndex;
+    private final int workerCount;
+    private final boolean incremental;
+    private final boolean linkFiles;
+    // Cleared once the file system turns out not to support links at all
+    private volatile boolean linkSupported = true;
+
+    private ExportManifest manifest;
+    private int keptCount;
+    private int renamedCount;
+    private final AtomicInteger copiedCount = new AtomicInteger();
+    private final AtomicInteger linkedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private final AtomicLong copiedBytes = new AtomicLong();
+    private final AtomicLong lastMessageTime = new AtomicLong();
+    private long startTime;
 
-    public CopyAndRenameImagesTask(Path[] files, Path directory, String pattern, int startIndex) {
+    public CopyAndRenameImagesTask(Path[] files, Path directory, String pattern, int startIndex, int workerCount, boolean incremental, boolean linkFiles) {
         this.files = files;
         this.directory = directory;
         this.pattern = pattern;
         this.startIndex = startIndex;
+        this.workerCount = Math.max(1, workerCount);
+        this.incremental = incremental;
+        this.linkFiles = linkFiles;
     }
 
     @Override
     protected Void call() throws Exception {
         updateProgress(0, files.length);
         Files.createDirectories(directory);
+        Path[] targetFiles = getTargetFiles(files, directory, pattern, startIndex);
+
+        startTime = System.nanoTime();
+        ExecutorService copyWorkers = Executors.newFixedThreadPool(workerCount, new WorkerThreadFactory("limo-copy-worker"));
+        try {
+            List<Integer> copyIndexes;
+            if (incremental) {
+                manifest = ExportManifest.load(directory);
+                manifest.delete();
+                copyIndexes = reuseExportedFiles(targetFiles);
+            } else {
+                manifest = new ExportManifest(directory);
+                manifest.delete();
+                copyIndexes = new ArrayList<>(files.length);
+                for (int i = 0; i < files.length; i++) {
+                    copyIndexes.add(i);
+                }
+            }
+            updateProgress(keptCount + renamedCount, files.length);
+
+            ArrayList<Future<?>> futures = new ArrayList<>(copyIndexes.size());
+            for (int i : copyIndexes) {
+                Path sourceFile = files[i];
+                Path targetFile = targetFiles[i];
+                futures.add(copyWorkers.submit(() -> {
+                    if (!isCancelled()) {
+                        copyFile(sourceFile, targetFile);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            // Interrupts running copies if cancelled
+            copyWorkers.shutdownNow();
+            if (manifest != null) {
+                // The manifest lists the files exported so far, also if cancelled. The interrupt of a
+                // cancel is cleared meanwhile, it would abort waiting and writing.
+                boolean interrupted = Thread.interrupted();
+                try {
+                    try {
+                        copyWorkers.awaitTermination(1, TimeUnit.MINUTES);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                    manifest.save();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+        updateMessage(getStatusMessage());
+        return null;
+    }
+
+    // Keeps exported files that are still up to date and renames those that have moved within the album.
+    // Returns the indexes of the files that must be copied.
+    private List<Integer> reuseExportedFiles(Path[] targetFiles) {
+        Map<String, ExportManifest.Entry> exportedEntries = new HashMap<>(manifest.getEntries());
+        ExportManifest.UpdatePlan plan = ExportManifest.planUpdate(directory, exportedEntries, files, targetFiles);
+        manifest.clear();
+        plan.keptEntries.forEach(manifest::put);
+        keptCount = plan.keptEntries.size();
+
+        List<Integer> copyIndexes = new ArrayList<>(plan.copyIndexes);
+        // Move all renamed files out of the way first, so that chains and cycles of renames
+        // never overwrite a file that has not been moved yet
+        Map<Integer, Path> tempFiles = new HashMap<>();
+        for (Map.Entry<Integer, String> rename : plan.renames.entrySet()) {
+            try {
+                Path tempFile = Files.createTempFile(directory, "limo-", ".tmp");
+                Files.move(directory.resolve(rename.getValue()), tempFile, StandardCopyOption.REPLACE_EXISTING);
+                tempFiles.put(rename.getKey(), tempFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        for (Map.Entry<Integer, String> rename : plan.renames.entrySet()) {
+            int i = rename.getKey();
+            Path tempFile = tempFiles.get(i);
+            boolean renamed = false;
+            if (tempFile != null) {
+                try {
+                    Files.move(tempFile, targetFiles[i], StandardCopyOption.REPLACE_EXISTING);
+                    manifest.put(targetFiles[i].getFileName().toString(), exportedEntries.get(rename.getValue()));
+                    renamed = true;
+                    renamedCount++;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    try {
+                        Files.deleteIfExists(tempFile);
+                    } catch (IOException e2) {
+                        // ok
+                    }
+                }
+            }
+            if (!renamed) {
+                copyIndexes.add(i);
+            }
+        }
+        Collections.sort(copyIndexes);
+        return copyIndexes;
+    }
+
+    static Path[] getTargetFiles(Path[] files, Path directory, String pattern, int startIndex) {
+        StringReplacer.Template template = StringReplacer.compile(pattern);
+        boolean usesName = template.uses("{NAME}");
+        boolean usesFormat = template.uses("{FORMAT}");
         Map<String, String> replacements  = new HashMap<>();
+        StringBuilder targetFileName = new StringBuilder();
+        Path[] targetFiles = new Path[files.length];
         for (int i = 0; i < files.length; i++) {
-            if (isCancelled() ) {
-                break;
-            }
             Path sourceFile = files[i];
             String sourceFileName = sourceFile.getFileName().toString();
             String sourceFileNameExt = "";
             int extIndex = sourceFileName.lastIndexOf('.');
             if (extIndex > 0) {
                 sourceFileNameExt = sourceFileName.substring(extIndex);
-                CopyAndRenameImagesService.getReplacements(sourceFileName.substring(0, extIndex), sourceFileNameExt.substring(1).toUpperCase(), replacements);
+                CopyAndRenameImagesService.getReplacements(usesName ? sourceFileName.substring(0, extIndex) : null,
+                        usesFormat ? sourceFileNameExt.substring(1).toUpperCase() : null, replacements);
             } else {
                 CopyAndRenameImagesService.getReplacements(sourceFileName, "", replacements);
             }
 
-            String targetFileName = StringReplacer.replace(pattern, startIndex + i, replacements) + sourceFileNameExt;
-            Path targetFile = directory.resolve(targetFileName);
-            if (Files.exists(targetFile)) {
-                try {
-                    Files.delete(targetFile);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+            targetFileName.setLength(0);
+            template.render(startIndex + i, replacements, targetFileName);
+            targetFileName.append(sourceFileNameExt);
+            targetFiles[i] = directory.resolve(targetFileName.toString());
+        }
+        return targetFiles;
+    }
+
+    private void copyFile(Path sourceFile, Path targetFile) {
+        try {
+            // Never write through an existing file, it may be a link to another file
+            Files.deleteIfExists(targetFile);
+            if (linkFiles && link(sourceFile, targetFile)) {
+                linkedCount.incrementAndGet();
+            } else {
+                long size = transfer(sourceFile, targetFile);
+                copiedBytes.addAndGet(size);
+                copiedCount.incrementAndGet();
+            }
+            manifest.put(targetFile.getFileName().toString(), ExportManifest.createEntry(sourceFile, targetFile));
+        } catch (IOException e) {
+            failedCount.incrementAndGet();
+            if (!isCancelled()) {
+                e.printStackTrace();
             }
             try {
-                Files.copy(sourceFile, targetFile);
-            } catch (IOException e) {
+                Files.deleteIfExists(targetFile);
+            } catch (IOException e2) {
+                // ok
+            }
+        }
+        updateProgress(keptCount + renamedCount + copiedCount.get() + linkedCount.get() + failedCount.get(), files.length);
+        long time = System.nanoTime();
+        long lastTime = lastMessageTime.get();
+        if (time - lastTime > MESSAGE_INTERVAL && lastMessageTime.compareAndSet(lastTime, time)) {
+            updateMessage(getStatusMessage());
+        }
+    }
+
+    // Creates a hard link, returns false if the file must be copied instead,
+    // e.g. because it is on another drive
+    private boolean link(Path sourceFile, Path targetFile) {
+        if (!linkSupported) {
+            return false;
+        }
+        try {
+            Files.createLink(targetFile, sourceFile);
+            return true;
+        } catch (UnsupportedOperationException e) {
+            linkSupported = false;
+        } catch (IOException | SecurityException e) {
+            if (DEBUG) {
                 e.printStackTrace();
             }
-            updateProgress(i + 1, files.length);
         }
-        updateMessage(MessageFormat.format("{0} file(s) copied", files.length));
-        return null;
+        return false;
     }
 
+    // Lets the OS copy the bytes where possible, otherwise uses a large direct buffer
+    private static long transfer(Path sourceFile, Path targetFile) throws IOException {
+        try (FileChannel source = FileChannel.open(sourceFile, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(targetFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+            long size = source.size();
+            long position = 0;
+            while (position < size) {
+                long count = source.transferTo(position, size - position, target);
+                if (count <= 0) {
+                    break;
+                }
+                position += count;
+            }
+            if (position < size) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                source.position(position);
+                while (source.read(buffer) >= 0 || buffer.position() > 0) {
+                    buffer.flip();
+                    position += target.write(buffer);
+                    buffer.compact();
+                }
+            }
+            return position;
+        }
+    }
+
+    private String getStatusMessage() {
+        double seconds = Math.max(1e-3, (System.nanoTime() - startTime) * 1e-9);
+        int copiedCount = this.copiedCount.get();
+        String message = MessageFormat.format(AppInfo.RES.getString("0.of.1.files.copied.2.mb.s.3.files.s"),
+                copiedCount, files.length, copiedBytes.get() / (1024.0 * 1024.0) / seconds, copiedCount / seconds);
+        int linkedCount = this.linkedCount.get();
+        if (linkedCount > 0) {
+            message += MessageFormat.format(AppInfo.RES.getString("0.linked.suffix"), linkedCount);
+        }
+        if (keptCount > 0 || renamedCount > 0) {
+            message += MessageFormat.format(AppInfo.RES.getString("0.unchanged.1.renamed.suffix"), keptCount, renamedCount);
+        }
+        int failedCount = this.failedCount.get();
+        if (failedCount > 0) {
+            message += MessageFormat.format(AppInfo.RES.getString("0.failed.suffix"), failedCount);
+        }
+        return message;
+    }
 }
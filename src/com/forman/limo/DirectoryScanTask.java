@@ -0,0 +1,200 @@
+package com.forman.limo;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import static com.forman.limo.AppInfo.DEBUG;
+
+// Collects the image files among the given files and directories. Directories are scanned in
+// parallel, the files found are passed in batches to the listener on the FX application thread.
+public class DirectoryScanTask extends Task<Void> {
+
+    // Directories may be on slow network drives, so use more threads than cores
+    private static final int THREAD_COUNT = 8;
+    private static final long BATCH_INTERVAL = 250;
+
+    private final List<Path> files;
+    private final Set<String> extensions;
+    private final boolean recursive;
+    private final Consumer<List<Path>> listener;
+    // Optionally removes unwanted files from a batch, runs in the scan thread
+    private UnaryOperator<List<Path>> filter;
+    private int skippedFileCount;
+
+    // The image files of a directory, in name order
+    private final ConcurrentLinkedQueue<List<Path>> foundFiles = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger foundFileCount = new AtomicInteger();
+    private final AtomicInteger scannedDirectoryCount = new AtomicInteger();
+
+    public DirectoryScanTask(List<Path> files, Set<String> extensions, boolean recursive, Consumer<List<Path>> listener) {
+        this.files = files;
+        this.extensions = extensions;
+        this.recursive = recursive;
+        this.listener = listener;
+    }
+
+    public void setFilter(UnaryOperator<List<Path>> filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    protected Void call() throws Exception {
+        updateProgress(-1, 1);
+        ArrayList<Path> rootFiles = new ArrayList<>();
+        ArrayList<ScanAction> scanActions = new ArrayList<>();
+        for (Path file : files) {
+            BasicFileAttributes attributes = readAttributes(file);
+            if (attributes == null) {
+                continue;
+            }
+            if (attributes.isRegularFile()) {
+                if (isImageFile(file)) {
+                    rootFiles.add(file);
+                }
+            } else if (attributes.isDirectory() && recursive) {
+                scanActions.add(new ScanAction(file));
+            }
+        }
+        addFoundFiles(rootFiles);
+
+        ForkJoinPool pool = new ForkJoinPool(THREAD_COUNT);
+        try {
+            ForkJoinTask<Void> scan = pool.submit(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(scanActions);
+                }
+            });
+            while (!scan.isDone() && !isCancelled()) {
+                try {
+                    scan.get(BATCH_INTERVAL, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // next batch
+                }
+                publishFoundFiles();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        publishFoundFiles();
+        return null;
+    }
+
+    private void publishFoundFiles() {
+        ArrayList<Path> foundBatch = new ArrayList<>();
+        List<Path> directoryFiles;
+        while ((directoryFiles = foundFiles.poll()) != null) {
+            foundBatch.addAll(directoryFiles);
+        }
+        List<Path> batch = foundBatch;
+        if (filter != null && !batch.isEmpty()) {
+            batch = filter.apply(foundBatch);
+            skippedFileCount += foundBatch.size() - batch.size();
+        }
+        if (!batch.isEmpty()) {
+            List<Path> publishedBatch = batch;
+            Platform.runLater(() -> {
+                // Nothing is added after cancellation, e.g. when the album has been closed
+                if (!isCancelled()) {
+                    listener.accept(publishedBatch);
+                }
+            });
+        }
+        if (skippedFileCount > 0) {
+            updateMessage(MessageFormat.format(AppInfo.RES.getString("scanning.0.images.found.in.1.folders.2.identical.skipped"),
+                    foundFileCount.get(), scannedDirectoryCount.get(), skippedFileCount));
+        } else {
+            updateMessage(MessageFormat.format(AppInfo.RES.getString("scanning.0.images.found.in.1.folders"),
+                    foundFileCount.get(), scannedDirectoryCount.get()));
+        }
+    }
+
+    private void addFoundFiles(List<Path> files) {
+        if (!files.isEmpty()) {
+            foundFiles.add(files);
+            foundFileCount.addAndGet(files.size());
+        }
+    }
+
+    private boolean isImageFile(Path file) {
+        String name = file.getFileName().toString();
+        int pos = name.lastIndexOf('.');
+        return pos > 0 && extensions.contains(name.substring(pos + 1).toLowerCase());
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            if (DEBUG) {
+                e.printStackTrace();
+            }
+            return null;
+        }
+    }
+
+    private class ScanAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+
+        ScanAction(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            if (isCancelled()) {
+                return;
+            }
+            ArrayList<Path> imageFiles = new ArrayList<>();
+            ArrayList<ScanAction> scanActions = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path file : stream) {
+                    if (isCancelled()) {
+                        return;
+                    }
+                    BasicFileAttributes attributes = readAttributes(file);
+                    if (attributes == null) {
+                        continue;
+                    }
+                    if (attributes.isRegularFile()) {
+                        if (isImageFile(file)) {
+                            imageFiles.add(file);
+                        }
+                    } else if (attributes.isDirectory()) {
+                        scanActions.add(new ScanAction(file));
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                if (DEBUG) {
+                    e.printStackTrace();
+                }
+            }
+            imageFiles.sort(null);
+            addFoundFiles(imageFiles);
+            scannedDirectoryCount.incrementAndGet();
+            invokeAll(scanActions);
+        }
+    }
+}
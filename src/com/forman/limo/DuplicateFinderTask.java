@@ -0,0 +1,197 @@
+package com.forman.limo;
+
+import javafx.concurrent.Task;
+import javafx.scene.image.Image;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static com.forman.limo.AppInfo.DEBUG;
+
+// Finds groups of duplicate and near-duplicate images among the album's files. Every image is
+// reduced to a perceptual hash, computed from the cheapest image available: the one displayed if
+// decoded from the file, the cached thumbnail, the embedded Exif thumbnail, or else the decoded file.
+// All show the same picture, as bars around Exif thumbnails are left out by the hash. Images whose hashes
+// differ in at most maxDistance bits are looked up through a multi-index hash table and form a
+// group, also when they are only similar through other images of the group.
+public class DuplicateFinderTask extends Task<List<List<Path>>> {
+
+    // Bits of the 64 bit hash that may differ between near-duplicates
+    public static final int MAX_DISTANCE = 6;
+    // Size at which files without any thumbnail are decoded
+    private static final double DECODE_SIZE = 64;
+
+    private final List<Path> files;
+    private final Map<Path, Image> images;
+    private final ThumbnailCache thumbnailCache;
+    private final double thumbnailSize;
+    private final int maxDistance;
+
+    public DuplicateFinderTask(List<Path> files, Map<Path, Image> images, ThumbnailCache thumbnailCache, double thumbnailSize, int maxDistance) {
+        this.files = files;
+        this.images = images;
+        this.thumbnailCache = thumbnailCache;
+        this.thumbnailSize = thumbnailSize;
+        this.maxDistance = maxDistance;
+    }
+
+    @Override
+    protected List<List<Path>> call() throws Exception {
+        int fileCount = files.size();
+        long[] hashes = new long[fileCount];
+        boolean[] hashed = new boolean[fileCount];
+        AtomicInteger doneCount = new AtomicInteger();
+        updateHashingProgress(0);
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            pool.submit(() -> IntStream.range(0, fileCount).parallel().forEach(i -> {
+                if (isCancelled()) {
+                    return;
+                }
+                Long hash = computeHash(files.get(i));
+                if (hash != null) {
+                    hashes[i] = hash;
+                    hashed[i] = true;
+                }
+                int count = doneCount.incrementAndGet();
+                if (count % 100 == 0) {
+                    updateHashingProgress(count);
+                }
+            })).get();
+        } finally {
+            pool.shutdownNow();
+        }
+        if (isCancelled()) {
+            return null;
+        }
+
+        updateProgress(-1, 1);
+        updateMessage(AppInfo.RES.getString("comparing.images"));
+        return findGroups(files, hashes, hashed, maxDistance);
+    }
+
+    // Groups are in the order of the given files, as are the files of a group. Files that have
+    // not been hashed are ignored.
+    static List<List<Path>> findGroups(List<Path> files, long[] hashes, boolean[] hashed, int maxDistance) {
+        MultiIndexHashTable hashTable = new MultiIndexHashTable(hashes, hashed, maxDistance);
+
+        // The similar images following each image, queried in parallel
+        int[][] similarIndexes = new int[hashes.length][];
+        IntStream.range(0, hashes.length).parallel().forEach(i -> {
+            if (hashed[i]) {
+                IntStream.Builder builder = IntStream.builder();
+                hashTable.query(hashes[i], j -> {
+                    if (j > i) {
+                        builder.add(j);
+                    }
+                });
+                similarIndexes[i] = builder.build().toArray();
+            }
+        });
+
+        // Union-find, each group is named by its first image
+        int[] roots = new int[hashes.length];
+        for (int i = 0; i < hashes.length; i++) {
+            roots[i] = i;
+        }
+        for (int i = 0; i < hashes.length; i++) {
+            if (similarIndexes[i] != null) {
+                for (int j : similarIndexes[i]) {
+                    union(roots, i, j);
+                }
+            }
+        }
+        TreeMap<Integer, List<Path>> groupsByRoot = new TreeMap<>();
+        for (int i = 0; i < hashes.length; i++) {
+            int root = find(roots, i);
+            if (root != i) {
+                List<Path> group = groupsByRoot.get(root);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    group.add(files.get(root));
+                    groupsByRoot.put(root, group);
+                }
+                group.add(files.get(i));
+            }
+        }
+        return new ArrayList<>(groupsByRoot.values());
+    }
+
+    private Long computeHash(Path file) {
+        Image image = getImage(file);
+        if (image == null || image.isError() || image.getWidth() < 1 || image.getHeight() < 1) {
+            return null;
+        }
+        try {
+            return PerceptualHash.dHash(image);
+        } catch (RuntimeException e) {
+            if (DEBUG) {
+                e.printStackTrace();
+            }
+            return null;
+        }
+    }
+
+    private Image getImage(Path file) {
+        Image image = images.get(file);
+        if (image != null) {
+            return image;
+        }
+        image = thumbnailCache != null ? thumbnailCache.get(file, thumbnailSize) : null;
+        if (image != null) {
+            return image;
+        }
+        try (ImageFileReader reader = new ImageFileReader(file)) {
+            if (reader.isJpeg()) {
+                byte[] thumbnailData = ExifThumbnailReader.readThumbnailData(reader, reader.readMetadata());
+                if (thumbnailData != null) {
+                    image = new Image(new ByteArrayInputStream(thumbnailData));
+                    if (!image.isError()) {
+                        return image;
+                    }
+                }
+            }
+            try (InputStream stream = reader.newInputStream()) {
+                return new Image(stream, DECODE_SIZE, DECODE_SIZE, true, false);
+            }
+        } catch (Exception e) {
+            if (DEBUG) {
+                e.printStackTrace();
+            }
+            return null;
+        }
+    }
+
+    private void updateHashingProgress(int count) {
+        updateProgress(count, files.size());
+        updateMessage(MessageFormat.format(AppInfo.RES.getString("hashing.images.0.of.1"), count, files.size()));
+    }
+
+    private static int find(int[] roots, int i) {
+        while (roots[i] != i) {
+            roots[i] = roots[roots[i]];
+            i = roots[i];
+        }
+        return i;
+    }
+
+    // The smaller index becomes the root
+    private static void union(int[] roots, int i, int j) {
+        int root1 = find(roots, i);
+        int root2 = find(roots, j);
+        if (root1 < root2) {
+            roots[root2] = root1;
+        } else if (root2 < root1) {
+            roots[root1] = root2;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.forman.limo;
+
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifThumbnailDirectory;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+class ExifThumbnailReader {
+
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final byte[] EXIF_PREAMBLE = {'E', 'x', 'i', 'f', 0, 0};
+
+    static byte[] readThumbnailData(ImageFileReader reader, Metadata metadata) throws IOException {
+        if (metadata == null) {
+            return null;
+        }
+        ExifThumbnailDirectory thumbnailDirectory = metadata.getFirstDirectoryOfType(ExifThumbnailDirectory.class);
+        if (thumbnailDirectory == null
+                || !thumbnailDirectory.containsTag(ExifThumbnailDirectory.TAG_THUMBNAIL_OFFSET)
+                || !thumbnailDirectory.containsTag(ExifThumbnailDirectory.TAG_THUMBNAIL_LENGTH)) {
+            return null;
+        }
+        Integer offset = thumbnailDirectory.getInteger(ExifThumbnailDirectory.TAG_THUMBNAIL_OFFSET);
+        Integer length = thumbnailDirectory.getInteger(ExifThumbnailDirectory.TAG_THUMBNAIL_LENGTH);
+        if (offset == null || length == null || offset <= 0 || length <= 0) {
+            return null;
+        }
+        long tiffHeaderPosition = findTiffHeaderPosition(reader);
+        if (tiffHeaderPosition < 0) {
+            return null;
+        }
+        // Usually already read with the Exif data
+        byte[] data = new byte[length];
+        if (reader.read(tiffHeaderPosition + offset, data) < length) {
+            return null;
+        }
+        // Must be a JPEG
+        if (length < 2 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != MARKER_SOI) {
+            return null;
+        }
+        return data;
+    }
+
+    // The thumbnail offset given in the EXIF data is relative to the TIFF header that follows the EXIF preamble
+    private static long findTiffHeaderPosition(ImageFileReader reader) throws IOException {
+        try (DataInputStream stream = new DataInputStream(reader.newHeadInputStream(true))) {
+            if (stream.readUnsignedByte() != 0xFF || stream.readUnsignedByte() != MARKER_SOI) {
+                return -1;
+            }
+            long position = 2;
+            while (true) {
+                int b = stream.readUnsignedByte();
+                position++;
+                if (b != 0xFF) {
+                    return -1;
+                }
+                int marker = stream.readUnsignedByte();
+                position++;
+                while (marker == 0xFF) {
+                    marker = stream.readUnsignedByte();
+                    position++;
+                }
+                if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                    return -1;
+                }
+                int segmentLength = stream.readUnsignedShort() - 2;
+                position += 2;
+                if (segmentLength < 0) {
+                    return -1;
+                }
+                if (marker == MARKER_APP1 && segmentLength > EXIF_PREAMBLE.length) {
+                    byte[] preamble = new byte[EXIF_PREAMBLE.length];
+                    stream.readFully(preamble);
+                    if (Arrays.equals(preamble, EXIF_PREAMBLE)) {
+                        return position + EXIF_PREAMBLE.length;
+                    }
+                    skipFully(stream, segmentLength - EXIF_PREAMBLE.length);
+                } else {
+                    skipFully(stream, segmentLength);
+                }
+                position += segmentLength;
+            }
+        }
+    }
+
+    private static void skipFully(InputStream stream, long n) throws IOException {
+        while (n > 0) {
+            long skipped = stream.skip(n);
+            if (skipped <= 0) {
+                if (stream.read() < 0) {
+                    throw new IOException("unexpected end of file");
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.forman.limo;
+
+import com.forman.limo.data.ContentHashIndex;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.forman.limo.AppInfo.DEBUG;
+
+// Remembers the source file of each exported file, so that a later export can keep or rename
+// exported files instead of copying them again. Stored as a tab-separated text file in the export directory.
+class ExportManifest {
+
+    static final String FILE_NAME = ".limo-export";
+    private static final String HEADER = "# " + AppInfo.NAME + " export manifest 3";
+
+    static class Entry {
+        final Path sourceFile;
+        final long size;
+        final long lastModified;
+        final String hash;
+        // Of the exported file, to recognize exported files changed or replaced in the export directory
+        final long targetLastModified;
+
+        Entry(Path sourceFile, long size, long lastModified, String hash, long targetLastModified) {
+            this.sourceFile = sourceFile;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.targetLastModified = targetLastModified;
+        }
+    }
+
+    // How an export updates the exported files of a previous one
+    static class UpdatePlan {
+        // Target name --> entry of the exported file that is kept as it is
+        final Map<String, Entry> keptEntries = new HashMap<>();
+        // File index --> current name of the exported file to be renamed to the file's target name
+        final Map<Integer, String> renames = new LinkedHashMap<>();
+        // Indexes of the files that must be copied
+        final List<Integer> copyIndexes = new ArrayList<>();
+    }
+
+    private final Path directory;
+    // Target file name --> entry
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    ExportManifest(Path directory) {
+        this.directory = directory;
+    }
+
+    static boolean exists(Path directory) {
+        return Files.isRegularFile(directory.resolve(FILE_NAME));
+    }
+
+    static ExportManifest load(Path directory) {
+        ExportManifest manifest = new ExportManifest(directory);
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.isRegularFile(file)) {
+            return manifest;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) {
+                return manifest;
+            }
+            while ((line = reader.readLine()) != null) {
+                // target name, size, last modified, target last modified, hash, source file
+                String[] fields = line.split("\t", 6);
+                if (fields.length == 6) {
+                    try {
+                        manifest.entries.put(fields[0], new Entry(Paths.get(fields[5]),
+                                Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[4], Long.parseLong(fields[3])));
+                    } catch (RuntimeException e) {
+                        // skip malformed entry
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (DEBUG) {
+                e.printStackTrace();
+            }
+        }
+        return manifest;
+    }
+
+    void save() throws IOException {
+        Path tempFile = Files.createTempFile(directory, "limo-", ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                    Entry entry = mapEntry.getValue();
+                    writer.write(mapEntry.getKey() + "\t" + entry.size + "\t" + entry.lastModified + "\t" + entry.targetLastModified + "\t" + entry.hash + "\t" + entry.sourceFile);
+                    writer.newLine();
+                }
+            }
+            Files.move(tempFile, directory.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    // Called before exported files are touched, so that an interrupted export never leaves a manifest
+    // describing other files than those in the directory
+    void delete() throws IOException {
+        Files.deleteIfExists(directory.resolve(FILE_NAME));
+    }
+
+    Map<String, Entry> getEntries() {
+        return entries;
+    }
+
+    Entry get(String targetName) {
+        return entries.get(targetName);
+    }
+
+    void put(String targetName, Entry entry) {
+        entries.put(targetName, entry);
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    // Plans to keep exported files that are still up to date and to rename those that have moved
+    // within the album. Chains and cycles of renames are resolved by the caller.
+    static UpdatePlan planUpdate(Path directory, Map<String, Entry> entries, Path[] files, Path[] targetFiles) {
+        // Exported files that are still valid, grouped by their source file
+        Set<Path> sourceFiles = new HashSet<>(Arrays.asList(files));
+        Map<Path, ArrayDeque<String>> exportedNamesBySource = new HashMap<>();
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            String name = mapEntry.getKey();
+            Entry entry = mapEntry.getValue();
+            if (sourceFiles.contains(entry.sourceFile) && isTargetUpToDate(entry, directory.resolve(name)) && isUpToDate(entry)) {
+                exportedNamesBySource.computeIfAbsent(entry.sourceFile, k -> new ArrayDeque<>()).add(name);
+            }
+        }
+
+        UpdatePlan plan = new UpdatePlan();
+        Set<String> usedNames = new HashSet<>();
+        boolean[] kept = new boolean[files.length];
+        for (int i = 0; i < files.length; i++) {
+            String name = targetFiles[i].getFileName().toString();
+            ArrayDeque<String> exportedNames = exportedNamesBySource.get(files[i]);
+            if (exportedNames != null && exportedNames.remove(name)) {
+                kept[i] = true;
+                usedNames.add(name);
+                plan.keptEntries.put(name, entries.get(name));
+            }
+        }
+
+        for (int i = 0; i < files.length; i++) {
+            if (kept[i]) {
+                continue;
+            }
+            String exportedName = null;
+            ArrayDeque<String> exportedNames = exportedNamesBySource.get(files[i]);
+            while (exportedNames != null && !exportedNames.isEmpty() && exportedName == null) {
+                String name = exportedNames.poll();
+                if (usedNames.add(name)) {
+                    exportedName = name;
+                }
+            }
+            if (exportedName != null) {
+                plan.renames.put(i, exportedName);
+            } else {
+                plan.copyIndexes.add(i);
+            }
+        }
+        return plan;
+    }
+
+    static Entry createEntry(Path sourceFile, Path targetFile) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(sourceFile, BasicFileAttributes.class);
+        return new Entry(sourceFile, attributes.size(), attributes.lastModifiedTime().toMillis(), computeHash(sourceFile),
+                Files.getLastModifiedTime(targetFile).toMillis());
+    }
+
+    // Whether the exported file is still the one written by the export
+    static boolean isTargetUpToDate(Entry entry, Path targetFile) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(targetFile, BasicFileAttributes.class);
+            return attributes.size() == entry.size && attributes.lastModifiedTime().toMillis() == entry.targetLastModified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Whether the source file still has the content it had when it was exported. Files touched
+    // without being changed are detected by their hash.
+    static boolean isUpToDate(Entry entry) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(entry.sourceFile, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return false;
+        }
+        if (attributes.size() != entry.size) {
+            return false;
+        }
+        if (attributes.lastModifiedTime().toMillis() == entry.lastModified) {
+            return true;
+        }
+        try {
+            return computeHash(entry.sourceFile).equals(entry.hash);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Hash of the whole file, so that also edits which keep the size are detected
+    static String computeHash(Path file) throws IOException {
+        return Long.toHexString(ContentHashIndex.hash(file));
+    }
+}
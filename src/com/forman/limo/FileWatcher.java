@@ -0,0 +1,246 @@
+package com.forman.limo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.forman.limo.AppInfo.DEBUG;
+
+// Watches the directories of the album's image files and reports the files whose size or
+// modification time changed, e.g. after they have been edited externally. Events are collected
+// until no new ones arrived for the debounce delay, so that an editor saving a file in several
+// steps results in a single report. As every watched directory costs a native watch, at most
+// maxDirectoryCount directories are watched: those of recently touched files first, then those
+// holding the most album files. The listener is called on the watcher thread.
+class FileWatcher implements Closeable {
+
+    static final int MAX_DIRECTORY_COUNT = 256;
+    static final long DEBOUNCE_DELAY = 500;
+
+    private final Consumer<Set<Path>> listener;
+    private final int maxDirectoryCount;
+    private final long debounceDelay;
+    private final WatchService watchService;
+
+    // Requested by the application, guarded by this
+    private List<Path> newFiles;
+    private final LinkedHashSet<Path> touchedDirectories = new LinkedHashSet<>();
+    private boolean updateRequested;
+
+    // Owned by the watcher thread
+    private final Map<Path, WatchKey> watchKeys = new HashMap<>();
+    private final Map<Path, FileState> fileStates = new HashMap<>();
+    private final Set<Path> changedFiles = new LinkedHashSet<>();
+    private List<Path> files = new ArrayList<>();
+    private long lastEventTime;
+
+    FileWatcher(Consumer<Set<Path>> listener) throws IOException {
+        this(listener, MAX_DIRECTORY_COUNT, DEBOUNCE_DELAY);
+    }
+
+    FileWatcher(Consumer<Set<Path>> listener, int maxDirectoryCount, long debounceDelay) throws IOException {
+        this.listener = listener;
+        this.maxDirectoryCount = maxDirectoryCount;
+        this.debounceDelay = debounceDelay;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        new WorkerThreadFactory("limo-file-watcher").newThread(this::run).start();
+    }
+
+    // Sets the files to be watched, takes effect within the debounce delay
+    synchronized void setFiles(List<Path> files) {
+        newFiles = new ArrayList<>(files);
+        updateRequested = true;
+    }
+
+    // Makes sure the file's directory is watched, e.g. before the file is edited externally
+    synchronized void touch(Path file) {
+        Path directory = file.getParent();
+        if (directory != null) {
+            touchedDirectories.remove(directory);
+            touchedDirectories.add(directory);
+            if (touchedDirectories.size() > maxDirectoryCount) {
+                touchedDirectories.remove(touchedDirectories.iterator().next());
+            }
+            updateRequested = true;
+        }
+    }
+
+    synchronized int getWatchedDirectoryCount() {
+        return watchKeys.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                update();
+                WatchKey watchKey = watchService.poll(debounceDelay, TimeUnit.MILLISECONDS);
+                while (watchKey != null) {
+                    handleEvents(watchKey);
+                    watchKey = watchService.poll();
+                }
+                if (!changedFiles.isEmpty() && System.currentTimeMillis() - lastEventTime >= debounceDelay) {
+                    reportChangedFiles();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // closed
+        }
+    }
+
+    private void update() {
+        List<Path> touchedDirectories;
+        synchronized (this) {
+            if (!updateRequested) {
+                return;
+            }
+            updateRequested = false;
+            if (newFiles != null) {
+                files = newFiles;
+                newFiles = null;
+            }
+            touchedDirectories = new ArrayList<>(this.touchedDirectories);
+        }
+
+        HashMap<Path, List<Path>> directoryFiles = new HashMap<>();
+        for (Path file : files) {
+            Path directory = file.getParent();
+            if (directory != null) {
+                directoryFiles.computeIfAbsent(directory, d -> new ArrayList<>()).add(file);
+            }
+        }
+        LinkedHashSet<Path> directories = new LinkedHashSet<>();
+        for (int i = touchedDirectories.size() - 1; i >= 0 && directories.size() < maxDirectoryCount; i--) {
+            if (directoryFiles.containsKey(touchedDirectories.get(i))) {
+                directories.add(touchedDirectories.get(i));
+            }
+        }
+        if (directories.size() < maxDirectoryCount) {
+            directoryFiles.keySet().stream()
+                    .filter(directory -> !directories.contains(directory))
+                    .sorted(Comparator.comparingInt((Path directory) -> directoryFiles.get(directory).size()).reversed())
+                    .limit(maxDirectoryCount - directories.size())
+                    .forEach(directories::add);
+        }
+
+        // Recorded before registering, so that no change in between goes unnoticed
+        HashMap<Path, FileState> oldFileStates = new HashMap<>(fileStates);
+        fileStates.clear();
+        for (Path directory : directories) {
+            for (Path file : directoryFiles.get(directory)) {
+                FileState fileState = oldFileStates.get(file);
+                fileStates.put(file, fileState != null ? fileState : FileState.of(file));
+            }
+        }
+
+        synchronized (this) {
+            watchKeys.entrySet().removeIf(entry -> {
+                if (!directories.contains(entry.getKey())) {
+                    entry.getValue().cancel();
+                    return true;
+                }
+                return false;
+            });
+            for (Path directory : directories) {
+                if (!watchKeys.containsKey(directory)) {
+                    try {
+                        watchKeys.put(directory, directory.register(watchService,
+                                StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_MODIFY));
+                    } catch (IOException e) {
+                        if (DEBUG) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            }
+        }
+        fileStates.keySet().removeIf(file -> !watchKeys.containsKey(file.getParent()));
+        changedFiles.retainAll(fileStates.keySet());
+    }
+
+    private void handleEvents(WatchKey watchKey) {
+        Path directory = (Path) watchKey.watchable();
+        for (WatchEvent<?> event : watchKey.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                for (Path file : fileStates.keySet()) {
+                    if (directory.equals(file.getParent())) {
+                        changedFiles.add(file);
+                    }
+                }
+            } else {
+                Path file = directory.resolve((Path) event.context());
+                if (fileStates.containsKey(file)) {
+                    changedFiles.add(file);
+                }
+            }
+        }
+        lastEventTime = System.currentTimeMillis();
+        if (!watchKey.reset()) {
+            synchronized (this) {
+                watchKeys.remove(directory);
+            }
+        }
+    }
+
+    private void reportChangedFiles() {
+        HashSet<Path> reportedFiles = new HashSet<>();
+        for (Path file : changedFiles) {
+            FileState fileState = FileState.of(file);
+            // Missing files keep their old state and are reported once they are back
+            if (fileState != null && !fileState.isSameAs(fileStates.get(file))) {
+                fileStates.put(file, fileState);
+                reportedFiles.add(file);
+            }
+        }
+        changedFiles.clear();
+        if (!reportedFiles.isEmpty()) {
+            listener.accept(reportedFiles);
+        }
+    }
+
+    private static class FileState {
+        final long size;
+        final long lastModified;
+
+        FileState(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        static FileState of(Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return new FileState(attributes.size(), attributes.lastModifiedTime().toMillis());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        boolean isSameAs(FileState other) {
+            return other != null && size == other.size && lastModified == other.lastModified;
+        }
+    }
+}
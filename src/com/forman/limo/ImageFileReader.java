@@ -0,0 +1,159 @@
+package com.forman.limo;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.ImageProcessingException;
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifReader;
+import com.drew.metadata.jpeg.JpegReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+// Reads an image file through a single open channel: first the metadata the album needs from the
+// file's head, then the whole image for decoding, without reading the head twice.
+class ImageFileReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Image dimensions (SOFn) and Exif (APP1), which includes date/times, orientation and thumbnail
+    private static final List<JpegSegmentMetadataReader> JPEG_READERS = Arrays.asList(new JpegReader(), new ExifReader());
+
+    private final Path file;
+    private final FileChannel channel;
+    // All bytes read from the channel so far
+    private byte[] head = new byte[BUFFER_SIZE];
+    private int headLength;
+
+    ImageFileReader(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    // For JPEGs, reading stops at the start of the image data. Other formats are read completely.
+    Metadata readMetadata() throws ImageProcessingException, IOException {
+        if (isJpeg()) {
+            return JpegMetadataReader.readMetadata(newHeadInputStream(true), JPEG_READERS);
+        }
+        return ImageMetadataReader.readMetadata(file.toFile());
+    }
+
+    boolean isJpeg() throws IOException {
+        return fill(2) && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8;
+    }
+
+    // Stream of the file's head, optionally reading more of the file on demand
+    InputStream newHeadInputStream(boolean extendable) {
+        return new HeadInputStream(extendable);
+    }
+
+    // Stream of the whole file, must only be opened once
+    InputStream newInputStream() throws IOException {
+        channel.position(headLength);
+        return new SequenceInputStream(new ByteArrayInputStream(head, 0, headLength), Channels.newInputStream(channel));
+    }
+
+    // Reads data at the given file position, returns the number of bytes read
+    int read(long position, byte[] data) throws IOException {
+        int count = 0;
+        if (position < headLength) {
+            count = (int) Math.min(data.length, headLength - position);
+            System.arraycopy(head, (int) position, data, 0, count);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, count, data.length - count);
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                break;
+            }
+        }
+        return buffer.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Makes sure that at least minLength bytes are in the head, unless the file is shorter
+    private boolean fill(int minLength) throws IOException {
+        while (headLength < minLength) {
+            if (headLength == head.length) {
+                head = Arrays.copyOf(head, Math.max(minLength, 2 * head.length));
+            }
+            int n = channel.read(ByteBuffer.wrap(head, headLength, head.length - headLength), headLength);
+            if (n < 0) {
+                return false;
+            }
+            headLength += n;
+        }
+        return true;
+    }
+
+    private class HeadInputStream extends InputStream {
+        private final boolean extendable;
+        private int position;
+
+        HeadInputStream(boolean extendable) {
+            this.extendable = extendable;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureAvailable(1)) {
+                return -1;
+            }
+            return head[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureAvailable(1)) {
+                return -1;
+            }
+            int n = Math.min(len, headLength - position);
+            System.arraycopy(head, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0 || !ensureAvailable(1)) {
+                return 0;
+            }
+            int skipped = (int) Math.min(n, headLength - position);
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return headLength - position;
+        }
+
+        private boolean ensureAvailable(int count) throws IOException {
+            if (position + count > headLength && extendable) {
+                fill(position + count + BUFFER_SIZE);
+            }
+            return position + count <= headLength;
+        }
+    }
+}
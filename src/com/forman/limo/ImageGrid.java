@@ -0,0 +1,302 @@
+package com.forman.limo;
+
+import com.forman.limo.data.ImageItem;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Orientation;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.shape.Rectangle;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Only the tiles of visible rows (plus some overscan) exist, tiles scrolled out of view are recycled
+class ImageGrid extends Region {
+
+    interface Listener {
+        void onVisibleRangeChanged(int firstIndex, int endIndex);
+    }
+
+    private static final double GAP = 1;
+    private static final int OVERSCAN_ROW_COUNT = 1;
+    // Tile padding plus image view margin, see ImageTile
+    private static final double TILE_INSETS = 12;
+    private static final double DEFAULT_LABEL_HEIGHT = 18;
+
+    private final List<Path> imageFiles;
+    private final Function<Path, ImageItem> imageItemProvider;
+    private final Predicate<Path> selection;
+    private final ImageTile.Listener imageTileListener;
+
+    private final Pane viewport;
+    private final Rectangle viewportClip;
+    private final ScrollBar scrollBar;
+
+    private final Map<Integer, ImageTile> visibleTiles = new HashMap<>();
+    private final Map<Path, ImageTile> visibleTilesByFile = new HashMap<>();
+    private final ArrayDeque<ImageTile> freeTiles = new ArrayDeque<>();
+
+    private double imageFitWidth;
+    private double labelHeight = -1;
+    private int columnCount = 1;
+    private int firstVisibleIndex = -1;
+    private int endVisibleIndex = -1;
+    private Listener listener;
+
+    ImageGrid(List<Path> imageFiles,
+              Function<Path, ImageItem> imageItemProvider,
+              Predicate<Path> selection,
+              double imageFitWidth,
+              ImageTile.Listener imageTileListener) {
+        this.imageFiles = imageFiles;
+        this.imageItemProvider = imageItemProvider;
+        this.selection = selection;
+        this.imageFitWidth = imageFitWidth;
+        this.imageTileListener = imageTileListener;
+
+        viewport = new Pane();
+        viewportClip = new Rectangle();
+        viewport.setClip(viewportClip);
+
+        scrollBar = new ScrollBar();
+        scrollBar.setOrientation(Orientation.VERTICAL);
+        scrollBar.setMin(0);
+        scrollBar.valueProperty().addListener(observable -> requestLayout());
+
+        getChildren().addAll(viewport, scrollBar);
+
+        setFocusTraversable(true);
+        addEventFilter(MouseEvent.MOUSE_PRESSED, event -> requestFocus());
+        addEventHandler(ScrollEvent.SCROLL, event -> {
+            scrollTo(scrollBar.getValue() - event.getDeltaY());
+            event.consume();
+        });
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    void setImageFitWidth(double imageFitWidth) {
+        this.imageFitWidth = imageFitWidth;
+        for (ImageTile imageTile : visibleTiles.values()) {
+            imageTile.setImageFitWidth(imageFitWidth);
+        }
+        for (ImageTile imageTile : freeTiles) {
+            imageTile.setImageFitWidth(imageFitWidth);
+        }
+        requestLayout();
+    }
+
+    void refresh() {
+        requestLayout();
+    }
+
+    // Moves the tiles of visible files along with their files, so that only the tiles of files
+    // that entered the visible range need to be rebound in the next layout pass
+    void applyChange(ListChangeListener.Change<? extends Path> change) {
+        change.reset();
+        if (visibleTiles.isEmpty()) {
+            requestLayout();
+            return;
+        }
+        Map<Path, ImageTile> removedTiles = new HashMap<>();
+        Map<Integer, ImageTile> movedTiles = new HashMap<>();
+        while (change.next()) {
+            int from = change.getFrom();
+            if (change.wasPermutated()) {
+                int to = change.getTo();
+                Iterator<Map.Entry<Integer, ImageTile>> iterator = visibleTiles.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<Integer, ImageTile> entry = iterator.next();
+                    int index = entry.getKey();
+                    if (index >= from && index < to) {
+                        iterator.remove();
+                        movedTiles.put(change.getPermutation(index), entry.getValue());
+                    }
+                }
+            } else if (change.wasAdded() || change.wasRemoved()) {
+                int removedEnd = from + change.getRemovedSize();
+                int shift = change.getAddedSize() - change.getRemovedSize();
+                Iterator<Map.Entry<Integer, ImageTile>> iterator = visibleTiles.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<Integer, ImageTile> entry = iterator.next();
+                    int index = entry.getKey();
+                    if (index >= removedEnd) {
+                        iterator.remove();
+                        movedTiles.put(index + shift, entry.getValue());
+                    } else if (index >= from) {
+                        iterator.remove();
+                        removedTiles.put(entry.getValue().imageItem.file, entry.getValue());
+                    }
+                }
+                // Files moved by remove + add keep their tiles
+                List<? extends Path> list = change.getList();
+                for (int index = from; index < change.getTo() && !removedTiles.isEmpty(); index++) {
+                    ImageTile imageTile = removedTiles.remove(list.get(index));
+                    if (imageTile != null) {
+                        movedTiles.put(index, imageTile);
+                    }
+                }
+            }
+            visibleTiles.putAll(movedTiles);
+            movedTiles.clear();
+        }
+        for (ImageTile imageTile : removedTiles.values()) {
+            visibleTilesByFile.remove(imageTile.imageItem.file, imageTile);
+            releaseTile(imageTile);
+        }
+        requestLayout();
+    }
+
+    void updateImageItem(Path file) {
+        ImageTile imageTile = visibleTilesByFile.get(file);
+        if (imageTile != null) {
+            imageTile.setImageItem(getImageItem(file), selection.test(file));
+        }
+    }
+
+    void updateSelection(Collection<? extends Path> files, boolean selected) {
+        for (Path file : files) {
+            ImageTile imageTile = visibleTilesByFile.get(file);
+            if (imageTile != null) {
+                imageTile.setSelected(selected);
+            }
+        }
+    }
+
+    void ensureVisible(int index) {
+        if (index < 0 || index >= imageFiles.size()) {
+            return;
+        }
+        double rowHeight = getTileHeight() + GAP;
+        double y = (index / columnCount) * rowHeight;
+        double scrollY = scrollBar.getValue();
+        double height = getHeight();
+        if (y < scrollY) {
+            scrollTo(y);
+        } else if (y + rowHeight > scrollY + height) {
+            scrollTo(y + rowHeight - height);
+        }
+    }
+
+    private void scrollTo(double scrollY) {
+        scrollBar.setValue(Math.max(scrollBar.getMin(), Math.min(scrollBar.getMax(), scrollY)));
+    }
+
+    private double getTileWidth() {
+        return imageFitWidth + TILE_INSETS;
+    }
+
+    private double getTileHeight() {
+        return imageFitWidth + TILE_INSETS + (labelHeight >= 0 ? labelHeight : DEFAULT_LABEL_HEIGHT);
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = getWidth();
+        double height = getHeight();
+        int fileCount = imageFiles.size();
+
+        double scrollBarWidth = scrollBar.prefWidth(-1);
+        double viewportWidth = Math.max(0, width - scrollBarWidth);
+
+        if (labelHeight < 0 && fileCount > 0 && getScene() != null) {
+            ImageTile imageTile = acquireTile();
+            imageTile.imageLabel.setText("Xg");
+            imageTile.imageTilePane.applyCss();
+            labelHeight = Math.ceil(imageTile.imageLabel.prefHeight(-1));
+            releaseTile(imageTile);
+        }
+
+        double tileWidth = getTileWidth();
+        double tileHeight = getTileHeight();
+        double rowHeight = tileHeight + GAP;
+        columnCount = Math.max(1, (int) ((viewportWidth + GAP) / (tileWidth + GAP)));
+        int rowCount = (fileCount + columnCount - 1) / columnCount;
+        double contentHeight = rowCount * rowHeight;
+        double maxScrollY = Math.max(0, contentHeight - height);
+
+        scrollBar.setMax(maxScrollY);
+        scrollBar.setVisibleAmount(contentHeight > 0 ? maxScrollY * height / contentHeight : 0);
+        scrollBar.setUnitIncrement(rowHeight / 2);
+        scrollBar.setBlockIncrement(Math.max(rowHeight, height - rowHeight));
+        scrollBar.setVisible(maxScrollY > 0);
+        scrollBar.resizeRelocate(viewportWidth, 0, scrollBarWidth, height);
+        if (scrollBar.getValue() > maxScrollY) {
+            scrollBar.setValue(maxScrollY);
+        }
+
+        viewport.resizeRelocate(0, 0, viewportWidth, height);
+        viewportClip.setWidth(viewportWidth);
+        viewportClip.setHeight(height);
+
+        double scrollY = scrollBar.getValue();
+        int firstRow = Math.max(0, (int) Math.floor(scrollY / rowHeight) - OVERSCAN_ROW_COUNT);
+        int lastRow = Math.min(rowCount - 1, (int) Math.floor((scrollY + height) / rowHeight) + OVERSCAN_ROW_COUNT);
+        int firstIndex = firstRow * columnCount;
+        int endIndex = Math.min(fileCount, (lastRow + 1) * columnCount);
+
+        int newFirstVisibleIndex = Math.min(fileCount, (int) Math.floor(scrollY / rowHeight) * columnCount);
+        int newEndVisibleIndex = Math.min(fileCount, ((int) Math.floor((scrollY + height) / rowHeight) + 1) * columnCount);
+        if (newFirstVisibleIndex != firstVisibleIndex || newEndVisibleIndex != endVisibleIndex) {
+            firstVisibleIndex = newFirstVisibleIndex;
+            endVisibleIndex = newEndVisibleIndex;
+            if (listener != null) {
+                listener.onVisibleRangeChanged(firstVisibleIndex, endVisibleIndex);
+            }
+        }
+
+        Iterator<Map.Entry<Integer, ImageTile>> iterator = visibleTiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, ImageTile> entry = iterator.next();
+            int index = entry.getKey();
+            ImageTile imageTile = entry.getValue();
+            if (index < firstIndex || index >= endIndex || !imageTile.imageItem.file.equals(imageFiles.get(index))) {
+                iterator.remove();
+                visibleTilesByFile.remove(imageTile.imageItem.file, imageTile);
+                releaseTile(imageTile);
+            }
+        }
+
+        for (int index = firstIndex; index < endIndex; index++) {
+            ImageTile imageTile = visibleTiles.get(index);
+            if (imageTile == null) {
+                Path file = imageFiles.get(index);
+                imageTile = acquireTile();
+                imageTile.setImageItem(getImageItem(file), selection.test(file));
+                visibleTiles.put(index, imageTile);
+                visibleTilesByFile.put(file, imageTile);
+            }
+            int row = index / columnCount;
+            int column = index % columnCount;
+            imageTile.imageTilePane.resizeRelocate(column * (tileWidth + GAP), row * rowHeight - scrollY, tileWidth, tileHeight);
+        }
+    }
+
+    private ImageItem getImageItem(Path file) {
+        ImageItem imageItem = imageItemProvider.apply(file);
+        return imageItem != null ? imageItem : ImageItem.newEmpty(file);
+    }
+
+    private ImageTile acquireTile() {
+        ImageTile imageTile = freeTiles.poll();
+        if (imageTile == null) {
+            imageTile = new ImageTile(imageFitWidth, imageTileListener);
+            imageTile.imageTilePane.setManaged(false);
+            viewport.getChildren().add(imageTile.imageTilePane);
+        }
+        imageTile.imageTilePane.setVisible(true);
+        return imageTile;
+    }
+
+    private void releaseTile(ImageTile imageTile) {
+        imageTile.imageTilePane.setVisible(false);
+        freeTiles.push(imageTile);
+    }
+}
@@ -0,0 +1,170 @@
+package com.forman.limo;
+
+import com.forman.limo.data.ImageMetadata;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+
+// Pending image load requests, handed out nearest to the visible range of the album first.
+// All methods are thread-safe.
+class ImageLoadQueue {
+
+    static class Item {
+        final Path file;
+        final boolean previewAllowed;
+        // Metadata already known, e.g. from the album's metadata index, used instead of reading
+        // the file's metadata as long as the file is unchanged. Null if the metadata must be read.
+        final ImageMetadata knownMetadata;
+
+        Item(Path file, boolean previewAllowed, ImageMetadata knownMetadata) {
+            this.file = file;
+            this.previewAllowed = previewAllowed;
+            this.knownMetadata = knownMetadata;
+        }
+    }
+
+    private final Map<Path, Item> pendingItems = new HashMap<>();
+    private final Map<Path, Item> activeItems = new HashMap<>();
+    private final Map<Path, Integer> indexes = new HashMap<>();
+    private final TreeMap<Integer, Item> pendingItemsByIndex = new TreeMap<>();
+    private final ArrayDeque<Item> unindexedItems = new ArrayDeque<>();
+    private int firstVisibleIndex;
+    private int endVisibleIndex;
+
+    synchronized void add(Collection<Path> files, boolean previewAllowed, Function<Path, ImageMetadata> knownMetadata) {
+        for (Path file : files) {
+            Item item = new Item(file, previewAllowed, knownMetadata.apply(file));
+            Item oldItem = pendingItems.put(file, item);
+            if (oldItem != null) {
+                removeFromOrder(oldItem);
+            }
+            // Known indexes may be outdated, new items stay unindexed until the next index update
+            indexes.remove(file);
+            addToOrder(item);
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return pendingItems.isEmpty();
+    }
+
+    synchronized int size() {
+        return pendingItems.size();
+    }
+
+    synchronized void clear() {
+        pendingItems.clear();
+        activeItems.clear();
+        indexes.clear();
+        pendingItemsByIndex.clear();
+        unindexedItems.clear();
+    }
+
+    // Called whenever the album order changed
+    synchronized void updateIndexes(Function<Path, Integer> indexProvider) {
+        indexes.clear();
+        pendingItemsByIndex.clear();
+        unindexedItems.clear();
+        for (Path file : activeItems.keySet()) {
+            Integer index = indexProvider.apply(file);
+            if (index != null && index >= 0) {
+                indexes.put(file, index);
+            }
+        }
+        for (Item item : pendingItems.values()) {
+            Integer index = indexProvider.apply(item.file);
+            if (index != null && index >= 0) {
+                indexes.put(item.file, index);
+            }
+            addToOrder(item);
+        }
+    }
+
+    synchronized void setVisibleRange(int firstIndex, int endIndex) {
+        firstVisibleIndex = firstIndex;
+        endVisibleIndex = endIndex;
+    }
+
+    synchronized Item poll() {
+        Item item = null;
+        if (!pendingItemsByIndex.isEmpty()) {
+            Map.Entry<Integer, Item> entry = pendingItemsByIndex.ceilingEntry(firstVisibleIndex);
+            if (entry == null || entry.getKey() >= endVisibleIndex) {
+                Map.Entry<Integer, Item> entryBefore = pendingItemsByIndex.lowerEntry(firstVisibleIndex);
+                if (entry == null || entryBefore != null && getDistance(entryBefore.getKey()) < getDistance(entry.getKey())) {
+                    entry = entryBefore;
+                }
+            }
+            item = entry.getValue();
+        } else if (!unindexedItems.isEmpty()) {
+            item = unindexedItems.peek();
+        } else if (!pendingItems.isEmpty()) {
+            item = pendingItems.values().iterator().next();
+        }
+        if (item != null) {
+            pendingItems.remove(item.file);
+            removeFromOrder(item);
+            activeItems.put(item.file, item);
+        }
+        return item;
+    }
+
+    // Puts an active item back into the queue if it has left the visible range while other
+    // items are waiting there.
+    synchronized boolean defer(Item item) {
+        if (activeItems.get(item.file) != item) {
+            return false;
+        }
+        Integer index = indexes.get(item.file);
+        if (index == null || getDistance(index) <= getVisibleCount()) {
+            return false;
+        }
+        Map.Entry<Integer, Item> entry = pendingItemsByIndex.ceilingEntry(firstVisibleIndex);
+        if (entry == null || entry.getKey() >= endVisibleIndex) {
+            return false;
+        }
+        activeItems.remove(item.file);
+        pendingItems.put(item.file, item);
+        addToOrder(item);
+        return true;
+    }
+
+    synchronized void done(Item item) {
+        activeItems.remove(item.file, item);
+        if (!pendingItems.containsKey(item.file)) {
+            indexes.remove(item.file);
+        }
+    }
+
+    private int getVisibleCount() {
+        return Math.max(1, endVisibleIndex - firstVisibleIndex);
+    }
+
+    private int getDistance(int index) {
+        if (index < firstVisibleIndex) {
+            return firstVisibleIndex - index;
+        } else if (index >= endVisibleIndex) {
+            return index - endVisibleIndex + 1;
+        }
+        return 0;
+    }
+
+    private void addToOrder(Item item) {
+        Integer index = indexes.get(item.file);
+        if (index != null) {
+            pendingItemsByIndex.put(index, item);
+        } else {
+            unindexedItems.add(item);
+        }
+    }
+
+    private void removeFromOrder(Item item) {
+        Integer index = indexes.get(item.file);
+        if (index != null) {
+            pendingItemsByIndex.remove(index, item);
+        } else {
+            unindexedItems.remove(item);
+        }
+    }
+}
@@ -1,57 +1,224 @@
 package com.forman.limo;
 
-import com.drew.imaging.ImageMetadataReader;
-import com.drew.imaging.ImageProcessingException;
-import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
-import com.drew.metadata.Tag;
-import com.drew.metadata.exif.ExifSubIFDDirectory;
 import javafx.concurrent.Task;
 import javafx.scene.image.Image;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.forman.limo.AppInfo.DEBUG;
 
 public class ImageLoaderTask extends Task<Void> {
 
+    // Note, listener methods are called from the worker threads. Metadata is null if it could not be
+    // read or has not been required.
     public interface Listener {
+        void onPreviewImageLoaded(Path file, Image image, Metadata metadata);
+
         void onImageLoaded(Path file, Image image, Metadata metadata);
 
         void onImageLoadFailed(Path file, Exception e);
     }
 
-    private final Path[] imageFiles;
+    private final ImageLoadQueue imageLoadQueue;
     private final double requestedSize;
     private final Listener listener;
+    private int metadataReaderCount = 1;
+    private int imageDecoderCount = 1;
+    private ThumbnailCache thumbnailCache;
+    private volatile double previewSize;
 
-    public ImageLoaderTask(Path[] imageFiles, double requestedSize, Listener listener) {
-        this.imageFiles = imageFiles;
+    ImageLoaderTask(ImageLoadQueue imageLoadQueue, double requestedSize, Listener listener) {
+        this.imageLoadQueue = imageLoadQueue;
         this.requestedSize = requestedSize;
         this.listener = listener;
     }
 
+    public void setMetadataReaderCount(int metadataReaderCount) {
+        this.metadataReaderCount = Math.max(1, metadataReaderCount);
+    }
+
+    public void setImageDecoderCount(int imageDecoderCount) {
+        this.imageDecoderCount = Math.max(1, imageDecoderCount);
+    }
+
+    public void setThumbnailCache(ThumbnailCache thumbnailCache) {
+        this.thumbnailCache = thumbnailCache;
+    }
+
+    // If greater than zero, embedded EXIF thumbnails are passed to the listener before the image is decoded.
+    // Images are not decoded at all if their preview is at least as wide as the preview size.
+    public void setPreviewSize(double previewSize) {
+        this.previewSize = previewSize;
+    }
+
     @Override
     protected Void call() throws Exception {
-        for (Path imageFile : imageFiles) {
-            loadImage(imageFile);
+        updateProgress(0, imageLoadQueue.size());
+
+        ExecutorService metadataReaders = Executors.newFixedThreadPool(metadataReaderCount, new WorkerThreadFactory("limo-metadata-reader"));
+        ExecutorService imageDecoders = Executors.newFixedThreadPool(imageDecoderCount, new WorkerThreadFactory("limo-image-decoder"));
+        // Don't let fast metadata readers pile up work for slow decoders
+        Semaphore pendingDecodes = new Semaphore(2 * imageDecoderCount);
+        AtomicInteger doneCount = new AtomicInteger();
+        try {
+            ArrayList<Future<?>> readerFutures = new ArrayList<>();
+            for (int i = 0; i < metadataReaderCount; i++) {
+                readerFutures.add(metadataReaders.submit(() -> {
+                    ImageLoadQueue.Item item;
+                    while (!isCancelled() && (item = imageLoadQueue.poll()) != null) {
+                        loadItem(item, imageDecoders, pendingDecodes, doneCount);
+                    }
+                }));
+            }
+            for (Future<?> readerFuture : readerFutures) {
+                readerFuture.get();
+            }
+            imageDecoders.shutdown();
+            imageDecoders.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            metadataReaders.shutdownNow();
+            imageDecoders.shutdownNow();
         }
         return null;
     }
 
-    private void loadImage(Path imageFile) {
+    private void loadItem(ImageLoadQueue.Item item, ExecutorService imageDecoders, Semaphore pendingDecodes, AtomicInteger doneCount) {
+        Path imageFile = item.file;
+        Runnable done = () -> {
+            imageLoadQueue.done(item);
+            int count = doneCount.incrementAndGet();
+            updateProgress(count, count + imageLoadQueue.size());
+        };
+        Image image = thumbnailCache != null ? thumbnailCache.get(imageFile, requestedSize) : null;
+        double previewSize = this.previewSize;
+        boolean previewWanted = image == null && item.previewAllowed && previewSize > 0;
+        // The file is kept open until its image is decoded
+        // Known metadata is checked against the file here rather than in the FX application thread
+        boolean metadataRequired = item.knownMetadata == null || !item.knownMetadata.isUpToDate(imageFile);
+        ImageFileReader reader = image == null || metadataRequired ? openImageFile(imageFile) : null;
+        // Embedded thumbnails are located through the metadata
+        Metadata metadata = metadataRequired || previewWanted ? readMetadata(reader) : null;
+        if (image != null) {
+            close(reader);
+            listener.onImageLoaded(imageFile, image, metadata);
+            done.run();
+            return;
+        }
+        if (previewWanted) {
+            Image previewImage = readPreviewImage(reader, metadata);
+            if (previewImage != null) {
+                listener.onPreviewImageLoaded(imageFile, previewImage, metadata);
+                if (previewImage.getWidth() >= previewSize) {
+                    close(reader);
+                    done.run();
+                    return;
+                }
+            }
+        }
+        try {
+            pendingDecodes.acquire();
+        } catch (InterruptedException e) {
+            // cancelled
+            close(reader);
+            done.run();
+            return;
+        }
+        try {
+            imageDecoders.execute(() -> {
+                try {
+                    // Images that have been scrolled out of view are decoded later
+                    if (!isCancelled() && !imageLoadQueue.defer(item)) {
+                        decodeImage(imageFile, reader, metadata);
+                    }
+                } finally {
+                    close(reader);
+                    pendingDecodes.release();
+                    done.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shut down, the task never runs and must not hold the permit
+            pendingDecodes.release();
+            close(reader);
+            done.run();
+        }
+    }
+
+    private ImageFileReader openImageFile(Path imageFile) {
+        try {
+            return new ImageFileReader(imageFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static void close(ImageFileReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // ok
+            }
+        }
+    }
+
+    private Metadata readMetadata(ImageFileReader reader) {
+        if (reader == null) {
+            return null;
+        }
+        if (DEBUG) {
+            System.out.println("reading metadata of " + reader.getFile());
+        }
+        try {
+            return reader.readMetadata();
+        } catch (Throwable e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private Image readPreviewImage(ImageFileReader reader, Metadata metadata) {
+        if (reader == null) {
+            return null;
+        }
+        try {
+            byte[] thumbnailData = ExifThumbnailReader.readThumbnailData(reader, metadata);
+            if (thumbnailData != null) {
+                Image image = new Image(new ByteArrayInputStream(thumbnailData));
+                if (!image.isError()) {
+                    return image;
+                }
+            }
+        } catch (Throwable e) {
+            if (DEBUG) {
+                e.printStackTrace();
+            }
+        }
+        return null;
+    }
+
+    private void decodeImage(Path imageFile, ImageFileReader reader, Metadata metadata) {
         try {
             if (DEBUG) {
                 System.out.println("loading " + imageFile);
             }
-            Metadata metadata = null;
-            try {
-                metadata = ImageMetadataReader.readMetadata(imageFile.toFile());
-            } catch (Throwable e) {
-                e.printStackTrace();
+            Image image = decode(imageFile, reader, requestedSize);
+            if (image.isError()) {
+                Exception exception = image.getException();
+                listener.onImageLoadFailed(imageFile, exception != null ? exception : new IOException("failed to decode " + imageFile));
+                return;
+            }
+            if (thumbnailCache != null) {
+                thumbnailCache.put(imageFile, requestedSize, image);
             }
-            Image image = new Image(imageFile.toUri().toURL().toString(), requestedSize, requestedSize, true, true);
             listener.onImageLoaded(imageFile, image, metadata);
         } catch (IOException e) {
             e.printStackTrace();
@@ -61,4 +228,13 @@ public class ImageLoaderTask extends Task<Void> {
         }
     }
 
+    // Decodes synchronously in the current thread, continuing on the already opened file if any
+    static Image decode(Path imageFile, ImageFileReader reader, double requestedSize) throws IOException {
+        if (reader != null) {
+            try (InputStream stream = reader.newInputStream()) {
+                return new Image(stream, requestedSize, requestedSize, true, true);
+            }
+        }
+        return new Image(imageFile.toUri().toURL().toString(), requestedSize, requestedSize, true, true, false);
+    }
 }
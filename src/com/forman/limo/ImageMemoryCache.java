@@ -0,0 +1,81 @@
+package com.forman.limo;
+
+import javafx.scene.image.Image;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Keeps track of the memory used by the decoded images of an album and decides which images
+// must be dropped to stay within the budget. Must only be used from the FX application thread.
+class ImageMemoryCache {
+
+    private long maxSize;
+    private long size;
+    // Image file --> decoded image size in bytes, least recently used first
+    private final LinkedHashMap<Path, Long> entries = new LinkedHashMap<>(1024, 0.75F, true);
+
+    ImageMemoryCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getMaxSize() {
+        return maxSize;
+    }
+
+    // Returns the files whose images must be dropped
+    List<Path> setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        return evict(null);
+    }
+
+    // Returns the files whose images must be dropped, never the given one
+    List<Path> put(Path file, Image image) {
+        long imageSize = getImageSize(image);
+        Long oldImageSize = entries.put(file, imageSize);
+        size += imageSize - (oldImageSize != null ? oldImageSize : 0L);
+        return evict(file);
+    }
+
+    void touch(Path file) {
+        entries.get(file);
+    }
+
+    void remove(Path file) {
+        Long imageSize = entries.remove(file);
+        if (imageSize != null) {
+            size -= imageSize;
+        }
+    }
+
+    void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    static long getImageSize(Image image) {
+        // JavaFX keeps decoded images as 32-bit BGRA
+        return 4L * (long) Math.ceil(image.getWidth()) * (long) Math.ceil(image.getHeight());
+    }
+
+    private List<Path> evict(Path keptFile) {
+        List<Path> evictedFiles = new ArrayList<>();
+        Iterator<Map.Entry<Path, Long>> iterator = entries.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<Path, Long> eldest = iterator.next();
+            if (!eldest.getKey().equals(keptFile)) {
+                iterator.remove();
+                size -= eldest.getValue();
+                evictedFiles.add(eldest.getKey());
+            }
+        }
+        return evictedFiles;
+    }
+}
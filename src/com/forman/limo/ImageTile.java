@@ -4,6 +4,7 @@ import com.forman.limo.data.ImageItem;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
+import javafx.scene.control.OverrunStyle;
 import javafx.scene.control.Tooltip;
 import javafx.scene.effect.DropShadow;
 import javafx.scene.image.Image;
@@ -18,45 +19,32 @@ import java.text.MessageFormat;
 class ImageTile {
     public static final Image MISSING_IMAGE = new Image("com/forman/limo/resources/missing.png");
 
+    private static final DropShadow NORMAL_EFFECT = new DropShadow(8, Color.BLACK);
+    private static final DropShadow SELECTED_EFFECT = new DropShadow(16, Color.BLUE);
+
     interface Listener {
         void onImageTileMousePressed(MouseEvent event, ImageTile imageTile);
 
         void onImageTileContextMenuRequested(ContextMenuEvent event, ImageTile imageTile);
     }
 
-    final ImageItem imageItem;
+    ImageItem imageItem;
     final BorderPane imageTilePane;
     final ImageView imageView;
+    final Label imageLabel;
+    private final Tooltip tooltip;
 
     private boolean selected;
 
-    ImageTile(ImageItem imageItem, double imageFitWidth, boolean selected, Listener listener) {
-        this.imageItem = imageItem;
-        this.selected = selected;
-
-        Label imageLabel = new Label(imageItem.file.getFileName().toString());
-
-        Image image = imageItem.image;
+    ImageTile(double imageFitWidth, Listener listener) {
+        imageLabel = new Label();
+        imageLabel.setTextOverrun(OverrunStyle.CENTER_ELLIPSIS);
 
-        imageView = new ImageView(image != null ? image : MISSING_IMAGE);
+        imageView = new ImageView(MISSING_IMAGE);
         imageView.setPreserveRatio(true);
-        imageView.setFitWidth(imageFitWidth);
+        setImageFitWidth(imageFitWidth);
 
-        Tooltip tooltip;
-        if (image != null) {
-            String w = imageItem.getMetadataTagValue("JPEG", "Image Width",
-                    imageItem.getMetadataTagValue("Exif SubIFD", "Exif Image Width",
-                            imageItem.getMetadataTagValue("PNG-IHDR", "Image Width",
-                                    imageItem.getMetadataTagValue("GIF Header", "Image Width", "?"))));
-            String h = imageItem.getMetadataTagValue("JPEG", "Image Height",
-                    imageItem.getMetadataTagValue("Exif SubIFD", "Exif Image Height",
-                            imageItem.getMetadataTagValue("PNG-IHDR", "Image Height",
-                                    imageItem.getMetadataTagValue("GIF Header", "Image Height", "?"))));
-            tooltip = new Tooltip(MessageFormat.format(AppInfo.RES.getString("0.x.1.pixels.n.2"), w, h,
-                    imageItem.file.getParent().toString()));
-        } else {
-            tooltip = new Tooltip(imageItem.file.getParent().toString());
-        }
+        tooltip = new Tooltip();
         Tooltip.install(imageView, tooltip);
 
         BorderPane.setMargin(imageView, new Insets(3, 3, 3, 3));
@@ -64,23 +52,60 @@ class ImageTile {
         BorderPane.setAlignment(imageLabel, Pos.CENTER);
 
         imageTilePane = new BorderPane();
-        imageTilePane.setId(imageItem.file.toString());
 
         imageTilePane.setPadding(new Insets(3));
         imageTilePane.setCenter(imageView);
         imageTilePane.setBottom(imageLabel);
 
         imageTilePane.setOnMousePressed(event -> {
-            if (event.isPrimaryButtonDown()) {
+            if (event.isPrimaryButtonDown() && imageItem != null) {
                 listener.onImageTileMousePressed(event, this);
             }
         });
 
-        imageTilePane.setOnContextMenuRequested(event -> listener.onImageTileContextMenuRequested(event, this));
+        imageTilePane.setOnContextMenuRequested(event -> {
+            if (imageItem != null) {
+                listener.onImageTileContextMenuRequested(event, this);
+            }
+        });
+
+        updateState();
+    }
+
+    void setImageItem(ImageItem imageItem, boolean selected) {
+        this.imageItem = imageItem;
+        this.selected = selected;
+
+        imageTilePane.setId(imageItem.file.toString());
+        imageLabel.setText(imageItem.file.getFileName().toString());
+
+        Image image = imageItem.image;
+        imageView.setImage(image != null ? image : MISSING_IMAGE);
+
+        if (image != null) {
+            String w = imageItem.getMetadataTagValue("JPEG", "Image Width",
+                    imageItem.getMetadataTagValue("Exif SubIFD", "Exif Image Width",
+                            imageItem.getMetadataTagValue("PNG-IHDR", "Image Width",
+                                    imageItem.getMetadataTagValue("GIF Header", "Image Width", "?"))));
+            String h = imageItem.getMetadataTagValue("JPEG", "Image Height",
+                    imageItem.getMetadataTagValue("Exif SubIFD", "Exif Image Height",
+                            imageItem.getMetadataTagValue("PNG-IHDR", "Image Height",
+                                    imageItem.getMetadataTagValue("GIF Header", "Image Height", "?"))));
+            tooltip.setText(MessageFormat.format(AppInfo.RES.getString("0.x.1.pixels.n.2"), w, h,
+                    imageItem.file.getParent().toString()));
+        } else {
+            tooltip.setText(imageItem.file.getParent().toString());
+        }
 
         updateState();
     }
 
+    void setImageFitWidth(double imageFitWidth) {
+        imageView.setFitWidth(imageFitWidth);
+        imageView.setFitHeight(imageFitWidth);
+        imageLabel.setMaxWidth(imageFitWidth);
+    }
+
     boolean isSelected() {
         return selected;
     }
@@ -91,7 +116,7 @@ class ImageTile {
     }
 
     private void updateState() {
-        imageView.setEffect(new DropShadow(selected ? 16 : 8, selected ? Color.BLUE : Color.BLACK));
+        imageView.setEffect(selected ? SELECTED_EFFECT : NORMAL_EFFECT);
     }
 
 }
@@ -1,10 +1,10 @@
 package com.forman.limo;
 
-import com.drew.metadata.Directory;
+import com.drew.imaging.ImageMetadataReader;
 import com.drew.metadata.Metadata;
-import com.drew.metadata.Tag;
 import com.forman.limo.actions.*;
 import com.forman.limo.data.ImageItem;
+import com.forman.limo.data.ImageMetadata;
 import com.forman.limo.data.Prefs;
 import com.forman.limo.data.Project;
 import com.forman.limo.dialogs.*;
@@ -19,17 +19,16 @@ import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.ListChangeListener;
 import javafx.collections.MapChangeListener;
-import javafx.collections.ObservableList;
-import javafx.geometry.Bounds;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
+import javafx.event.EventHandler;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.input.*;
 import javafx.scene.layout.BorderPane;
-import javafx.scene.layout.FlowPane;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
@@ -46,6 +45,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 public class Main extends Application {
@@ -56,19 +56,36 @@ public class Main extends Application {
 
     private Stage mainWindow;
 
-    private FlowPane imageFlowPane;
+    private ImageGrid imageGrid;
     private Label infoLabel;
+    // Shows the progress of directory scans and the duplicate finder
+    private BorderPane taskPanel;
+    private Label taskLabel;
+    private ProgressBar taskProgressBar;
+    private final List<DirectoryScanTask> directoryScanTasks = new ArrayList<>();
+    // Receives the files of later scan batches as long as it is the latest action
+    private AddAction scanAddAction;
+    private DuplicateFinderTask duplicateFinderTask;
 
-    private HashMap<String, ImageTile> imageTilesMap = new HashMap<>();
-    private ScrollPane imageScrollPanel;
+    private final Set<Path> selectedImageFilesSet = new HashSet<>();
 
     private BorderPane emptyPanel;
     private BorderPane imagePanel;
     private BorderPane rootPanel;
 
     ExecutorService executorService = Executors.newCachedThreadPool();
-
-    private UndoList undoList = new UndoList();
+    private final ImageLoadQueue imageLoadQueue = new ImageLoadQueue();
+    private ImageLoaderTask imageLoaderTask;
+    private ThumbnailCache thumbnailCache;
+    private final Set<Path> requestedFullImageFiles = new HashSet<>();
+    private ImageMemoryCache imageMemoryCache;
+    // Files whose images have been dropped from memory and are reloaded once their tiles are shown
+    private final Set<Path> evictedImageFiles = new HashSet<>();
+    private final Set<Path> reloadedImageFiles = new LinkedHashSet<>();
+    // Reloads images whose files have been changed by other applications
+    private FileWatcher fileWatcher;
+
+    private UndoList undoList;
     private MetadataWindow metadataWindow;
     private ImageTileListener imageTileListener;
 
@@ -89,6 +106,13 @@ public class Main extends Application {
         }
         prefs.setSettings(preferences);
         project.setSettings(preferences);
+        thumbnailCache = new ThumbnailCache(ThumbnailCache.getDefaultDirectory(), prefs.getThumbnailCacheSizeInBytes());
+        prefs.thumbnailCacheSize.addListener(observable -> thumbnailCache.setMaxSize(prefs.getThumbnailCacheSizeInBytes()));
+        imageMemoryCache = new ImageMemoryCache(prefs.getImageCacheSizeInBytes());
+        prefs.imageCacheSize.addListener(observable -> dropImages(imageMemoryCache.setMaxSize(prefs.getImageCacheSizeInBytes())));
+        undoList = new UndoList(prefs.undoActionCount.get(), prefs.getUndoMemorySizeInBytes());
+        prefs.undoActionCount.addListener(observable -> undoList.setMaxActionCount(prefs.undoActionCount.get()));
+        prefs.undoMemorySize.addListener(observable -> undoList.setMaxMemorySize(prefs.getUndoMemorySizeInBytes()));
     }
 
     @Override
@@ -96,6 +120,13 @@ public class Main extends Application {
         Preferences preferences = getPreferences();
         prefs.getSettings(preferences);
         project.getSettings(preferences);
+        if (fileWatcher != null) {
+            try {
+                fileWatcher.close();
+            } catch (IOException e) {
+                // ok
+            }
+        }
         try {
             preferences.flush();
         } catch (BackingStoreException e) {
@@ -114,22 +145,19 @@ public class Main extends Application {
         });
 
         infoLabel = new Label();
-        imageFlowPane = new FlowPane();
+        imageTileListener = new ImageTileListener();
+        imageGrid = new ImageGrid(project.imageFiles,
+                this::getImageItemForTile,
+                selectedImageFilesSet::contains,
+                computeImageFitWidth(),
+                imageTileListener);
+        imageGrid.setListener(imageLoadQueue::setVisibleRange);
 
         Slider imageDisplaySizeSlider = new Slider();
         imageDisplaySizeSlider.setMin(0.0);
         imageDisplaySizeSlider.setMax(1.0);
         imageDisplaySizeSlider.valueProperty().bindBidirectional(project.imageDisplaySizeRatio);
 
-        imageFlowPane.setHgap(1);
-        imageFlowPane.setVgap(1);
-        imageScrollPanel = new ScrollPane(imageFlowPane);
-        imageScrollPanel.setVbarPolicy(ScrollPane.ScrollBarPolicy.AS_NEEDED);
-        imageScrollPanel.setPannable(true);
-        imageScrollPanel.setFitToWidth(true);
-        imageScrollPanel.setFitToHeight(false);
-        imageScrollPanel.setStyle("-fx-background-color:transparent;");
-
         BorderPane imageActionPanel = new BorderPane();
         imageActionPanel.setCenter(infoLabel);
         imageActionPanel.setRight(imageDisplaySizeSlider);
@@ -137,9 +165,9 @@ public class Main extends Application {
 
         imagePanel = new BorderPane();
         imagePanel.setPadding(new Insets(DEFAULT_INSET_SIZE));
-        imagePanel.setCenter(imageScrollPanel);
+        imagePanel.setCenter(imageGrid);
         imagePanel.setBottom(imageActionPanel);
-        BorderPane.setMargin(imageScrollPanel, new Insets(DEFAULT_INSET_SIZE, 0, DEFAULT_INSET_SIZE, 0));
+        BorderPane.setMargin(imageGrid, new Insets(DEFAULT_INSET_SIZE, 0, DEFAULT_INSET_SIZE, 0));
 
         Text emptyPanelText = new Text(AppInfo.RES.getString("drop.image.files.here.n") + "\n\n\u20DD");
         emptyPanelText.setFont(new Font(28));
@@ -148,6 +176,18 @@ public class Main extends Application {
         emptyPanel = new BorderPane(emptyPanelText);
         emptyPanel.setPadding(new Insets(DEFAULT_INSET_SIZE));
 
+        taskLabel = new Label();
+        taskProgressBar = new ProgressBar();
+        Button cancelTaskButton = new Button(AppInfo.RES.getString("cancel"));
+        cancelTaskButton.setOnAction(event -> cancelBackgroundTasks());
+        taskPanel = new BorderPane(taskLabel);
+        taskPanel.setLeft(taskProgressBar);
+        taskPanel.setRight(cancelTaskButton);
+        taskPanel.setPadding(new Insets(DEFAULT_INSET_SIZE));
+        BorderPane.setAlignment(taskLabel, Pos.CENTER_LEFT);
+        BorderPane.setAlignment(taskProgressBar, Pos.CENTER_LEFT);
+        BorderPane.setMargin(taskLabel, new Insets(0, DEFAULT_INSET_SIZE, 0, DEFAULT_INSET_SIZE));
+
         BooleanBinding hasNoProject = Bindings.createBooleanBinding(() -> project.projectFile.get() == null, project.projectFile);
         BooleanBinding hasNoImageFiles = Bindings.createBooleanBinding(project.imageFiles::isEmpty, project.imageFiles);
         BooleanBinding hasNoSelectedImageFiles = Bindings.createBooleanBinding(project.selectedImageFiles::isEmpty, project.selectedImageFiles);
@@ -179,9 +219,7 @@ public class Main extends Application {
             Dragboard db = event.getDragboard();
             boolean success = false;
             if (db.hasFiles()) {
-                List<Path> files = project.filterFiles(db.getFiles());
-                runAction(new AddAction(project, files));
-                loadImageFiles(files);
+                scanFiles(db.getFiles());
                 success = true;
             }
             event.setDropCompleted(success);
@@ -193,8 +231,20 @@ public class Main extends Application {
         updateInfoLabel();
 
         // Listener bindings
-        project.imageFiles.addListener((ListChangeListener<Path>) change -> Platform.runLater(() -> handleImageFilesChange(change)));
+        project.imageFiles.addListener((ListChangeListener<Path>) change -> {
+            if (Platform.isFxApplicationThread()) {
+                handleImageFilesChange(change);
+            } else {
+                // The change's details are only valid until the list changes again
+                Platform.runLater(() -> handleImageFilesChange(null));
+            }
+        });
         project.imageItems.addListener((MapChangeListener<Path, ImageItem>) change -> Platform.runLater(() -> handleImageItemsChange(change)));
+        try {
+            fileWatcher = new FileWatcher(files -> Platform.runLater(() -> reloadChangedImageFiles(files)));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
         project.selectedImageFiles.addListener((ListChangeListener<Path>) change -> Platform.runLater(() -> handleSelectedImageFilesChange(change)));
         ChangeListener<Number> imageDisplaySizeListener = (ObservableValue<? extends Number> ov, Number oldVal, Number newVal) -> handleImageDisplaySizeChange();
         project.imageDisplaySizeRatio.addListener(imageDisplaySizeListener);
@@ -202,19 +252,7 @@ public class Main extends Application {
         prefs.maxImageDisplaySize.addListener(imageDisplaySizeListener);
         project.projectFile.addListener((observable, oldValue, newValue) -> handleProjectFileChange());
 
-        project.selectedImageFiles.addListener((InvalidationListener) observable -> {
-            if (metadataWindow != null) {
-                if (!project.selectedImageFiles.isEmpty()) {
-                    Path file = project.selectedImageFiles.get(0);
-                    ImageItem imageItem = project.imageItems.get(file);
-                    if (imageItem.metadata != null) {
-                        metadataWindow.setItems(imageItem.metadata);
-                        return;
-                    }
-                }
-                metadataWindow.clearItems();
-            }
-        });
+        project.selectedImageFiles.addListener((InvalidationListener) observable -> updateMetadataWindow());
 
         project.modified.addListener(observable -> updateTitle());
 
@@ -330,7 +368,7 @@ public class Main extends Application {
     private Menu getToolsMenu(BooleanBinding hasNoImageFiles) {
         MenuItem copyAndRenameItem = new MenuItem(AppInfo.RES.getString("copy.and.rename") + "...");
         copyAndRenameItem.setAccelerator(KeyCombination.keyCombination("Ctrl+R"));
-        copyAndRenameItem.setOnAction(event -> CopyAndRenameDialog.show(mainWindow, project));
+        copyAndRenameItem.setOnAction(event -> CopyAndRenameDialog.show(mainWindow, project, prefs));
         copyAndRenameItem.disableProperty().bind(hasNoImageFiles);
 
         MenuItem sortByFilenameItem = new MenuItem(AppInfo.RES.getString("sort.by.filename"));
@@ -341,6 +379,10 @@ public class Main extends Application {
         sortByDateTimeItem.disableProperty().bind(hasNoImageFiles);
         sortByDateTimeItem.setOnAction(event -> runAction(new SortyByAction(project, SortyByAction.DATE_TIME_ORIGINAL)));
 
+        MenuItem findDuplicatesItem = new MenuItem(AppInfo.RES.getString("find.duplicates"));
+        findDuplicatesItem.disableProperty().bind(hasNoImageFiles);
+        findDuplicatesItem.setOnAction(event -> findDuplicates());
+
         MenuItem showExifItem = new MenuItem(AppInfo.RES.getString("show.exif.metadata"));
         // showExifItem.disableProperty().bind(hasNoImageFiles);
         showExifItem.setOnAction(event -> showExifWindow());
@@ -352,6 +394,8 @@ public class Main extends Application {
                 sortByFilenameItem,
                 sortByDateTimeItem,
                 new SeparatorMenuItem(),
+                findDuplicatesItem,
+                new SeparatorMenuItem(),
                 showExifItem
         );
         return toolsMenu;
@@ -379,6 +423,45 @@ public class Main extends Application {
             restoreWindowBounds(metadataWindow, prefs.getMetadataWindowBounds());
         }
         metadataWindow.show();
+        updateMetadataWindow();
+    }
+
+    private void updateMetadataWindow() {
+        if (metadataWindow == null) {
+            return;
+        }
+        if (project.selectedImageFiles.isEmpty()) {
+            metadataWindow.clearItems();
+            return;
+        }
+        Path file = project.selectedImageFiles.get(0);
+        ImageItem imageItem = project.imageItems.get(file);
+        if (imageItem != null && imageItem.metadata != null) {
+            metadataWindow.setItems(imageItem.metadata);
+        } else {
+            metadataWindow.clearItems();
+        }
+        // Images are loaded with the metadata the album needs only, the window shows all of it
+        if (metadataWindow.isShowing()) {
+            executorService.submit(() -> {
+                ImageMetadata metadata;
+                try {
+                    metadata = ImageMetadata.of(ImageMetadataReader.readMetadata(file.toFile()));
+                } catch (Exception e) {
+                    if (AppInfo.DEBUG) {
+                        e.printStackTrace();
+                    }
+                    return;
+                }
+                Platform.runLater(() -> {
+                    if (metadataWindow.isShowing()
+                            && !project.selectedImageFiles.isEmpty()
+                            && project.selectedImageFiles.get(0).equals(file)) {
+                        metadataWindow.setItems(metadata);
+                    }
+                });
+            });
+        }
     }
 
     private void restoreWindowBounds(Stage window, Rectangle exifWindowRectangle) {
@@ -430,66 +513,242 @@ public class Main extends Application {
     }
 
     private void loadImageFiles(List<Path> files) {
-        executorService.submit(new ImageLoaderTask(
-                files.toArray(new Path[0]),
+        loadImageFiles(files, true);
+    }
+
+    // Adds the image files among the given files and directories while they are found
+    private void scanFiles(List<File> files) {
+        List<Path> paths = files.stream().map(File::toPath).collect(Collectors.toList());
+        DirectoryScanTask directoryScanTask = new DirectoryScanTask(paths,
+                Project.getFilenameExtensions(project.imageFilenameExt.get()),
+                project.scanRecursive.get(),
+                this::addScannedFiles);
+        if (project.skipIdenticalFiles.get()) {
+            directoryScanTask.setFilter(project.contentHashIndex.newFilter(project.imageFiles)::filter);
+        }
+        scanAddAction = null;
+        EventHandler<WorkerStateEvent> doneHandler = event -> {
+            directoryScanTasks.remove(directoryScanTask);
+            updateTaskPanel();
+        };
+        directoryScanTask.setOnSucceeded(doneHandler);
+        directoryScanTask.setOnCancelled(doneHandler);
+        directoryScanTask.setOnFailed(doneHandler);
+        directoryScanTasks.add(directoryScanTask);
+        updateTaskPanel();
+        executorService.submit(directoryScanTask);
+    }
+
+    private void addScannedFiles(List<Path> files) {
+        // Batches of one scan form a single undoable action, unless other actions came in between
+        if (scanAddAction != null && undoList.getUndoAction() == scanAddAction) {
+            scanAddAction.addFiles(files);
+            // The action has grown
+            undoList.trim();
+        } else {
+            AddAction addAction = new AddAction(project, files);
+            runAction(addAction);
+            scanAddAction = addAction;
+        }
+        loadImageFiles(files);
+    }
+
+    private void findDuplicates() {
+        if (duplicateFinderTask != null) {
+            return;
+        }
+        // Images in memory are the cheapest to hash. Previews are Exif thumbnails, for those the
+        // task prefers a cached thumbnail decoded from the file.
+        HashMap<Path, Image> images = new HashMap<>();
+        for (ImageItem imageItem : project.imageItems.values()) {
+            if (imageItem.image != null && !imageItem.preview) {
+                images.put(imageItem.file, imageItem.image);
+            }
+        }
+        DuplicateFinderTask duplicateFinderTask = new DuplicateFinderTask(new ArrayList<>(project.imageFiles),
+                images,
+                thumbnailCache,
+                prefs.maxImageDisplaySize.doubleValue(),
+                DuplicateFinderTask.MAX_DISTANCE);
+        duplicateFinderTask.setOnSucceeded(event -> {
+            this.duplicateFinderTask = null;
+            updateTaskPanel();
+            showDuplicates(duplicateFinderTask.getValue());
+        });
+        duplicateFinderTask.setOnCancelled(event -> {
+            this.duplicateFinderTask = null;
+            updateTaskPanel();
+        });
+        duplicateFinderTask.setOnFailed(event -> {
+            this.duplicateFinderTask = null;
+            updateTaskPanel();
+            ExceptionDialog.show(mainWindow, AppInfo.RES.getString("finding.duplicates.failed"), duplicateFinderTask.getException());
+        });
+        this.duplicateFinderTask = duplicateFinderTask;
+        updateTaskPanel();
+        executorService.submit(duplicateFinderTask);
+    }
+
+    // Selects all but the first image of each group, so that the duplicates can be reviewed and deleted
+    private void showDuplicates(List<List<Path>> groups) {
+        ArrayList<Path> duplicates = new ArrayList<>();
+        for (List<Path> group : groups) {
+            duplicates.addAll(group.subList(1, group.size()));
+        }
+        // Images may have been removed meanwhile
+        duplicates.removeIf(file -> project.getImageFileIndex(file) < 0);
+        if (!duplicates.isEmpty()) {
+            project.selectedImageFiles.setAll(duplicates);
+            ensureImageIsVisible(project.getSelectedImageIndex());
+        }
+        DuplicatesDialog.show(mainWindow, groups, duplicates.size());
+    }
+
+    // Shows the progress of the duplicate finder or else of the latest directory scan
+    private void updateTaskPanel() {
+        Task<?> task = duplicateFinderTask;
+        if (task == null && !directoryScanTasks.isEmpty()) {
+            task = directoryScanTasks.get(directoryScanTasks.size() - 1);
+        }
+        if (task != null) {
+            taskLabel.textProperty().bind(task.messageProperty());
+            taskProgressBar.progressProperty().bind(task.progressProperty());
+            rootPanel.setBottom(taskPanel);
+        } else {
+            taskLabel.textProperty().unbind();
+            taskProgressBar.progressProperty().unbind();
+            rootPanel.setBottom(null);
+        }
+    }
+
+    private void cancelBackgroundTasks() {
+        for (DirectoryScanTask directoryScanTask : new ArrayList<>(directoryScanTasks)) {
+            directoryScanTask.cancel();
+        }
+        if (duplicateFinderTask != null) {
+            duplicateFinderTask.cancel();
+        }
+    }
+
+    private void loadImageFiles(List<Path> files, boolean previewAllowed) {
+        // Metadata already known, e.g. from the album's metadata index, is not read again while its file is unchanged
+        imageLoadQueue.add(files, previewAllowed, file -> {
+            ImageItem imageItem = project.getImageItem(file);
+            return imageItem != null ? imageItem.metadata : null;
+        });
+        imageLoadQueue.updateIndexes(project::getImageFileIndex);
+        startImageLoading();
+    }
+
+    private void reloadChangedImageFiles(Set<Path> files) {
+        ArrayList<Path> previewFiles = new ArrayList<>();
+        ArrayList<Path> fullFiles = new ArrayList<>();
+        for (Path file : files) {
+            ImageItem imageItem = project.getImageItem(file);
+            if (imageItem == null) {
+                continue;
+            }
+            // Full images must not be replaced by previews, see onPreviewImageLoaded()
+            if (imageItem.image != null && !imageItem.preview) {
+                fullFiles.add(file);
+            } else {
+                previewFiles.add(file);
+            }
+        }
+        imageLoadQueue.add(previewFiles, true, file -> null);
+        imageLoadQueue.add(fullFiles, false, file -> null);
+        imageLoadQueue.updateIndexes(project::getImageFileIndex);
+        startImageLoading();
+        if (!project.selectedImageFiles.isEmpty() && files.contains(project.selectedImageFiles.get(0))) {
+            updateMetadataWindow();
+        }
+    }
+
+    private void startImageLoading() {
+        if (imageLoaderTask != null || imageLoadQueue.isEmpty()) {
+            return;
+        }
+        ImageLoaderTask imageLoaderTask = new ImageLoaderTask(
+                imageLoadQueue,
                 prefs.maxImageDisplaySize.doubleValue(),
                 new ImageLoaderTask.Listener() {
+                    @Override
+                    public void onPreviewImageLoaded(Path file, Image image, Metadata metadata) {
+                        ImageMetadata convertedMetadata = metadata != null ? ImageMetadata.of(metadata).recordFileState(file) : null;
+                        Platform.runLater(() -> {
+                            ImageItem imageItem = project.imageItems.get(file);
+                            // Never replace a full image by its preview
+                            if (imageItem != null && (imageItem.image == null || imageItem.preview)) {
+                                ImageMetadata imageMetadata = convertedMetadata != null ? convertedMetadata : imageItem.metadata;
+                                project.imageItems.replace(file, new ImageItem(file, image, true, imageMetadata));
+                            }
+                        });
+                    }
+
                     @Override
                     public void onImageLoaded(Path file, Image image, Metadata metadata) {
-                        project.imageItems.replace(file, new ImageItem(file, image, convertMetadata(metadata)));
+                        ImageMetadata convertedMetadata = metadata != null ? ImageMetadata.of(metadata).recordFileState(file) : null;
+                        Platform.runLater(() -> {
+                            requestedFullImageFiles.remove(file);
+                            ImageItem imageItem = project.imageItems.get(file);
+                            ImageMetadata imageMetadata = convertedMetadata != null || imageItem == null ? convertedMetadata : imageItem.metadata;
+                            project.imageItems.replace(file, new ImageItem(file, image, imageMetadata));
+                        });
                     }
 
                     @Override
                     public void onImageLoadFailed(Path file, Exception e) {
                         // Note, could be used to display error message in image tile
                     }
-                }));
-    }
-
-    private static Map<String, Map<String, String>> convertMetadata(Metadata metadata) {
-        HashMap<String, Map<String, String>> metadataDict = new HashMap<>();
-        Iterable<Directory> directories = metadata.getDirectories();
-        for (Directory directory : directories) {
-            Map<String, String> catData = new HashMap<>();
-            metadataDict.put(directory.getName(), catData);
-            for (Tag tag : directory.getTags()) {
-                String tagName = tag.getTagName();
-                Object tagValue = directory.getObject(tag.getTagType());
-                //System.out.printf("  %s = %s (%s)%n", tagName, tagValue, tagValue.getClass());
-                String tagTextValue = "";
-                if (tagValue != null && tagValue.getClass().isArray()) {
-                    if (tagValue instanceof byte[]) {
-                        tagTextValue = Arrays.toString((byte[]) tagValue);
-                    } else if (tagValue instanceof char[]) {
-                        tagTextValue = Arrays.toString((char[]) tagValue);
-                    } else if (tagValue instanceof boolean[]) {
-                        tagTextValue = Arrays.toString((boolean[]) tagValue);
-                    } else if (tagValue instanceof short[]) {
-                        tagTextValue = Arrays.toString((short[]) tagValue);
-                    } else if (tagValue instanceof int[]) {
-                        tagTextValue = Arrays.toString((int[]) tagValue);
-                    } else if (tagValue instanceof long[]) {
-                        tagTextValue = Arrays.toString((long[]) tagValue);
-                    } else if (tagValue instanceof float[]) {
-                        tagTextValue = Arrays.toString((float[]) tagValue);
-                    } else if (tagValue instanceof double[]) {
-                        tagTextValue = Arrays.toString((double[]) tagValue);
-                    } else if (tagValue instanceof Object[]) {
-                        tagTextValue = Arrays.deepToString((Object[]) tagValue);
-                    }
-                } else if (tagValue != null) {
-                    tagTextValue = tagValue.toString();
-                }
-                catData.put(tagName, tagTextValue);
+                });
+        imageLoaderTask.setMetadataReaderCount(prefs.metadataReaderCount.get());
+        imageLoaderTask.setImageDecoderCount(prefs.imageDecoderCount.get());
+        imageLoaderTask.setThumbnailCache(thumbnailCache);
+        imageLoaderTask.setPreviewSize(computePreviewSize());
+        // Items deferred while the task was finishing are picked up by a new task
+        EventHandler<WorkerStateEvent> doneHandler = event -> {
+            if (this.imageLoaderTask == imageLoaderTask) {
+                this.imageLoaderTask = null;
+                startImageLoading();
             }
+        };
+        imageLoaderTask.setOnSucceeded(doneHandler);
+        imageLoaderTask.setOnCancelled(doneHandler);
+        imageLoaderTask.setOnFailed(doneHandler);
+        this.imageLoaderTask = imageLoaderTask;
+        executorService.submit(imageLoaderTask);
+    }
+
+    private void cancelImageLoading() {
+        imageLoadQueue.clear();
+        if (imageLoaderTask != null) {
+            imageLoaderTask.cancel();
+            imageLoaderTask = null;
         }
-        return metadataDict;
+        requestedFullImageFiles.clear();
+        evictedImageFiles.clear();
+        reloadedImageFiles.clear();
+        imageMemoryCache.clear();
+    }
+
+    private double computePreviewSize() {
+        return prefs.useEmbeddedThumbnails.get() ? computeImageFitWidth() : 0.0;
     }
 
     private void handleImageDisplaySizeChange() {
         double fitWidth = computeImageFitWidth();
-        for (ImageTile imageTile : this.imageTilesMap.values()) {
-            imageTile.imageView.setFitWidth(fitWidth);
+        imageGrid.setImageFitWidth(fitWidth);
+        if (imageLoaderTask != null) {
+            imageLoaderTask.setPreviewSize(computePreviewSize());
+        }
+        ArrayList<Path> tooSmallPreviewFiles = new ArrayList<>();
+        for (ImageItem imageItem : project.imageItems.values()) {
+            if (imageItem.preview && imageItem.image.getWidth() < fitWidth && requestedFullImageFiles.add(imageItem.file)) {
+                tooSmallPreviewFiles.add(imageItem.file);
+            }
+        }
+        if (!tooSmallPreviewFiles.isEmpty()) {
+            loadImageFiles(tooSmallPreviewFiles, false);
         }
     }
 
@@ -508,12 +767,12 @@ public class Main extends Application {
 
     private void setImageFilesSelected(List<? extends Path> imageFiles, boolean selected) {
         if (imageFiles != null) {
-            for (Path imageFile : imageFiles) {
-                ImageTile imageTile = imageTilesMap.get(imageFile.toString());
-                if (imageTile != null) {
-                    imageTile.setSelected(selected);
-                }
+            if (selected) {
+                selectedImageFilesSet.addAll(imageFiles);
+            } else {
+                selectedImageFilesSet.removeAll(imageFiles);
             }
+            imageGrid.updateSelection(imageFiles, selected);
         }
     }
 
@@ -551,6 +810,8 @@ public class Main extends Application {
             return;
         }
         try {
+            cancelBackgroundTasks();
+            cancelImageLoading();
             undoList.clear();
             project.init();
             project.open(projectFile.getPath());
@@ -626,6 +887,8 @@ public class Main extends Application {
         if (!checkModified("Close Project")) {
             return;
         }
+        cancelBackgroundTasks();
+        cancelImageLoading();
         undoList.clear();
         project.init();
     }
@@ -645,51 +908,25 @@ public class Main extends Application {
         if (AppInfo.DEBUG)
             System.out.println("handleImageFilesChange: " + change);
 
-        ObservableList<Node> imageTilePanes = imageFlowPane.getChildren();
-
         if (project.imageFiles.isEmpty()) {
             if (rootPanel.getCenter() != emptyPanel) {
                 rootPanel.setCenter(emptyPanel);
             }
-
-            imageTilesMap.clear();
-            imageTilePanes.clear();
-
         } else {
             if (rootPanel.getCenter() != imagePanel) {
                 rootPanel.setCenter(imagePanel);
             }
-
-            // For all existing images
-            for (int i = 0; i < project.imageFiles.size(); i++) {
-                Path imageFile = project.imageFiles.get(i);
-                if (i < imageTilePanes.size()) {
-                    Node imageTilePane = imageTilePanes.get(i);
-                    if (!imageFile.toString().equals(imageTilePane.getId())) {
-                        imageTilePanes.remove(imageTilePane);
-                        ImageTile imageTile = imageTilesMap.get(imageFile.toString());
-                        if (imageTile != null) {
-                            imageTilePanes.remove(imageTile.imageTilePane);
-                            imageTilePanes.add(i, imageTile.imageTilePane);
-                        } else {
-                            ImageItem imageItem = project.getImageItem(imageFile);
-                            addImageTile(imageItem, i);
-                        }
-                    }
-                } else {
-                    ImageItem imageItem = project.getImageItem(imageFile);
-                    addImageTile(imageItem, i);
-                }
-            }
-            // Remove remaining imageTilePanes
-            ArrayList<Node> removedNodes = new ArrayList<>();
-            for (int i = project.imageFiles.size(); i < imageTilePanes.size(); i++) {
-                removedNodes.add(imageTilePanes.get(i));
-            }
-            for (Node removedNode : removedNodes) {
-                imageTilesMap.remove(removedNode.getId());
-                imageTilePanes.remove(removedNode);
-            }
+        }
+        if (change != null) {
+            imageGrid.applyChange(change);
+        } else {
+            imageGrid.refresh();
+        }
+        if (!imageLoadQueue.isEmpty()) {
+            imageLoadQueue.updateIndexes(project::getImageFileIndex);
+        }
+        if (fileWatcher != null) {
+            fileWatcher.setFiles(project.imageFiles);
         }
 
         updateInfoLabel();
@@ -699,57 +936,45 @@ public class Main extends Application {
     private void handleImageItemsChange(MapChangeListener.Change<? extends Path, ? extends ImageItem> change) {
         if (AppInfo.DEBUG)
             System.out.println("handleImageItemsChange: change = " + change);
-        if (change.wasAdded() && change.wasRemoved()) {
-            ImageItem imageItem = change.getValueAdded();
-            assert imageItem != null;
-            replaceImageTile(imageItem);
-        } else if (change.wasAdded()) {
-            ImageItem imageItem = change.getValueAdded();
-            assert imageItem != null;
-            addImageTile(imageItem, -1);
-        } else if (change.wasRemoved()) {
-            ImageItem imageItem = change.getValueRemoved();
-            assert imageItem != null;
-            ImageTile imageTile = imageTilesMap.remove(imageItem.file.toString());
-            if (imageTile != null) {
-                imageFlowPane.getChildren().remove(imageTile.imageTilePane);
-            }
-        }
-    }
-
-    private void addImageTile(ImageItem imageItem, int index) {
-        assert imageItem != null;
-        ImageTile oldImageTile = imageTilesMap.get(imageItem.file.toString());
-        ImageTile newImageTile = createImageTile(imageItem, oldImageTile != null && oldImageTile.isSelected());
-        imageTilesMap.put(newImageTile.imageTilePane.getId(), newImageTile);
-        if (index == -1 && oldImageTile != null) {
-            index = imageFlowPane.getChildren().indexOf(oldImageTile.imageTilePane);
-        }
-        if (index >= 0) {
-            imageFlowPane.getChildren().add(index, newImageTile.imageTilePane);
+        Path file = change.getKey();
+        // The change may be outdated as it is handled later
+        ImageItem imageItem = project.getImageItem(file);
+        if (imageItem != null && imageItem.image != null) {
+            evictedImageFiles.remove(file);
+            dropImages(imageMemoryCache.put(file, imageItem.image));
         } else {
-            imageFlowPane.getChildren().add(newImageTile.imageTilePane);
+            imageMemoryCache.remove(file);
         }
+        imageGrid.updateImageItem(file);
     }
 
-    private void replaceImageTile(ImageItem imageItem) {
-        assert imageItem != null;
-        ImageTile oldImageTile = imageTilesMap.get(imageItem.file.toString());
-        assert oldImageTile != null;
-        ImageTile newImageTile = createImageTile(imageItem, oldImageTile.isSelected());
-        imageTilesMap.put(newImageTile.imageTilePane.getId(), newImageTile);
-        int index = imageFlowPane.getChildren().indexOf(oldImageTile.imageTilePane);
-        imageFlowPane.getChildren().set(index, newImageTile.imageTilePane);
+    private ImageItem getImageItemForTile(Path file) {
+        ImageItem imageItem = project.getImageItem(file);
+        if (imageItem != null && imageItem.image != null) {
+            imageMemoryCache.touch(file);
+        } else if (evictedImageFiles.remove(file)) {
+            // Usually a cheap thumbnail cache hit. Reload in a single batch after layout.
+            if (reloadedImageFiles.isEmpty()) {
+                Platform.runLater(() -> {
+                    ArrayList<Path> files = new ArrayList<>(reloadedImageFiles);
+                    reloadedImageFiles.clear();
+                    loadImageFiles(files);
+                });
+            }
+            reloadedImageFiles.add(file);
+        }
+        return imageItem;
     }
 
-    private ImageTile createImageTile(ImageItem imageItem, boolean selected) {
-        if (imageTileListener == null) {
-            imageTileListener = new ImageTileListener();
+    private void dropImages(List<Path> files) {
+        for (Path file : files) {
+            ImageItem imageItem = project.getImageItem(file);
+            if (imageItem != null && imageItem.image != null) {
+                evictedImageFiles.add(file);
+                requestedFullImageFiles.remove(file);
+                project.imageItems.replace(file, new ImageItem(file, null, imageItem.metadata));
+            }
         }
-        return new ImageTile(imageItem,
-                computeImageFitWidth(),
-                selected,
-                imageTileListener);
     }
 
     private void openExternal(Path file) {
@@ -761,6 +986,9 @@ public class Main extends Application {
     }
 
     private void editExternal(Path file) {
+        if (fileWatcher != null) {
+            fileWatcher.touch(file);
+        }
         try {
             java.awt.Desktop.getDesktop().edit(file.toFile());
         } catch (IOException e) {
@@ -769,37 +997,7 @@ public class Main extends Application {
     }
 
     private void ensureImageIsVisible(int index) {
-        if (index >= 0) {
-            Path file = project.imageFiles.get(index);
-            ImageTile imageTile = imageTilesMap.get(file.toString());
-            if (imageTile != null) {
-                ensureNodeIsVisible(imageScrollPanel, imageTile.imageTilePane);
-            }
-        }
-    }
-
-    private static void ensureNodeIsVisible(ScrollPane pane, Node node) {
-
-        Bounds paneBounds = pane.localToScene(pane.getBoundsInLocal());
-        //System.out.println("paneBounds = " + paneBounds);
-        Bounds nodeBounds = node.localToScene(node.getBoundsInLocal());
-        //System.out.println("nodeBounds = " + nodeBounds);
-
-        if (paneBounds.intersects(nodeBounds)) {
-            return;
-        }
-
-        Bounds parentBounds = pane.getContent().getBoundsInLocal();
-        double width = parentBounds.getWidth();
-        double height = parentBounds.getHeight();
-
-        Bounds nodeBoundsInParent = node.getBoundsInParent();
-        double x = nodeBoundsInParent.getMaxX();
-        double y = nodeBoundsInParent.getMaxY();
-
-        // scrolling values range from 0 to 1
-        pane.setHvalue(x / width);
-        pane.setVvalue(y / height);
+        imageGrid.ensureVisible(index);
     }
 
     private void handleKeyPressed(KeyEvent key) {
@@ -868,16 +1066,14 @@ public class Main extends Application {
                     selectedFiles.add(clickedFile);
                 }
             } else if (event.isShiftDown()) {
-                Map<Path, Integer> indexes = project.getImageFileIndexes();
-
                 int iMin = Integer.MAX_VALUE;
                 int iMax = Integer.MIN_VALUE;
                 for (Path file : selectedFiles) {
-                    Integer i = indexes.get(file);
+                    int i = project.getImageFileIndex(file);
                     iMin = Math.min(iMin, i);
                     iMax = Math.max(iMax, i);
                 }
-                int i0 = indexes.get(clickedFile);
+                int i0 = project.getImageFileIndex(clickedFile);
                 ArrayList<Path> newSelectedFiles = new ArrayList<>();
                 int i1, i2;
                 if (i0 <= iMin) {
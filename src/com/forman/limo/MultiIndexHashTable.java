@@ -0,0 +1,107 @@
+package com.forman.limo;
+
+import java.util.function.IntConsumer;
+
+// Index of 64 bit hashes for Hamming distance queries (multi-index hashing). The hash bits are
+// split into maxDistance + 1 disjoint ranges. By the pigeonhole principle, two hashes that differ
+// in at most maxDistance bits are equal in at least one range, so a query only needs to compare
+// the hashes that share one of its range values. Each range has its own table from range value
+// to hash ids. Built once, the table may be queried concurrently.
+class MultiIndexHashTable {
+
+    // Range values of wide ranges are folded into at most 2^MAX_TABLE_BITS buckets
+    private static final int MAX_TABLE_BITS = 20;
+
+    private final long[] hashes;
+    private final int maxDistance;
+    private final int[] rangeShifts;
+    private final long[] rangeMasks;
+    private final int tableMask;
+    // Per range, the ids of the hashes sorted by bucket, and the start of each bucket
+    private final int[][] bucketIds;
+    private final int[][] bucketStarts;
+
+    // Hashes are identified by their index, those not marked as hashed are left out
+    MultiIndexHashTable(long[] hashes, boolean[] hashed, int maxDistance) {
+        if (maxDistance < 0 || maxDistance >= 64) {
+            throw new IllegalArgumentException("maxDistance must be >= 0 and < 64");
+        }
+        this.hashes = hashes;
+        this.maxDistance = maxDistance;
+        int rangeCount = maxDistance + 1;
+        rangeShifts = new int[rangeCount];
+        rangeMasks = new long[rangeCount];
+        int maxRangeBits = 0;
+        for (int k = 0, shift = 0; k < rangeCount; k++) {
+            int rangeBits = (64 - shift) / (rangeCount - k);
+            rangeShifts[k] = shift;
+            rangeMasks[k] = rangeBits == 64 ? -1L : (1L << rangeBits) - 1;
+            maxRangeBits = Math.max(maxRangeBits, rangeBits);
+            shift += rangeBits;
+        }
+        // Not more buckets than hashes
+        int tableBits = Math.min(Math.min(maxRangeBits, MAX_TABLE_BITS), 32 - Integer.numberOfLeadingZeros(Math.max(1, hashes.length)));
+        tableMask = (1 << tableBits) - 1;
+
+        bucketIds = new int[rangeCount][];
+        bucketStarts = new int[rangeCount][];
+        for (int k = 0; k < rangeCount; k++) {
+            int[] starts = new int[tableMask + 2];
+            for (int id = 0; id < hashes.length; id++) {
+                if (hashed[id]) {
+                    starts[getBucket(k, hashes[id]) + 1]++;
+                }
+            }
+            for (int b = 0; b <= tableMask; b++) {
+                starts[b + 1] += starts[b];
+            }
+            int[] positions = new int[tableMask + 1];
+            System.arraycopy(starts, 0, positions, 0, tableMask + 1);
+            int[] sortedIds = new int[starts[tableMask + 1]];
+            for (int id = 0; id < hashes.length; id++) {
+                if (hashed[id]) {
+                    sortedIds[positions[getBucket(k, hashes[id])]++] = id;
+                }
+            }
+            bucketIds[k] = sortedIds;
+            bucketStarts[k] = starts;
+        }
+    }
+
+    // Passes the ids of all hashes within maxDistance of the given hash to the consumer, each once
+    void query(long hash, IntConsumer consumer) {
+        for (int k = 0; k < rangeShifts.length; k++) {
+            long rangeValue = getRangeValue(k, hash);
+            int bucket = (int) (rangeValue & tableMask);
+            int[] ids = bucketIds[k];
+            int end = bucketStarts[k][bucket + 1];
+            for (int i = bucketStarts[k][bucket]; i < end; i++) {
+                int id = ids[i];
+                long otherHash = hashes[id];
+                if (getRangeValue(k, otherHash) == rangeValue
+                        && !isReportedBefore(k, hash, otherHash)
+                        && PerceptualHash.distance(hash, otherHash) <= maxDistance) {
+                    consumer.accept(id);
+                }
+            }
+        }
+    }
+
+    // A hash is reported for the first range it shares with the query
+    private boolean isReportedBefore(int range, long hash, long otherHash) {
+        for (int k = 0; k < range; k++) {
+            if (getRangeValue(k, hash) == getRangeValue(k, otherHash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long getRangeValue(int range, long hash) {
+        return (hash >>> rangeShifts[range]) & rangeMasks[range];
+    }
+
+    private int getBucket(int range, long hash) {
+        return (int) (getRangeValue(range, hash) & tableMask);
+    }
+}
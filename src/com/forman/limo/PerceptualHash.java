@@ -0,0 +1,108 @@
+package com.forman.limo;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+
+import java.util.function.IntBinaryOperator;
+
+// 64 bit difference hash (dHash): the image is reduced to 9 x 8 gray cells, each bit tells whether
+// a cell is brighter than its right neighbour. Scaled, recompressed or slightly edited copies of an
+// image have hashes that differ in a few bits only, whatever the size of the image it was computed from.
+// Black bars around the picture, as of embedded Exif thumbnails of another aspect ratio, are not hashed.
+class PerceptualHash {
+
+    private static final int WIDTH = 9;
+    private static final int HEIGHT = 8;
+    // Cells are averaged from at most SAMPLE_COUNT x SAMPLE_COUNT pixels
+    private static final int SAMPLE_COUNT = 8;
+    // Maximum luminance of the pixels of letterbox bars, allowing for compression noise
+    private static final int BAR_LUMINANCE = 24;
+
+    static long dHash(Image image) {
+        PixelReader pixelReader = image.getPixelReader();
+        if (pixelReader == null) {
+            throw new IllegalArgumentException("image has no pixels");
+        }
+        return dHash((int) image.getWidth(), (int) image.getHeight(), pixelReader::getArgb);
+    }
+
+    static long dHash(int width, int height, IntBinaryOperator argbReader) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("empty image");
+        }
+        // Bars are cropped from each side up to a quarter of the image
+        int top = 0;
+        while (top < height / 4 && isBar(argbReader, 0, top, width, top + 1)) {
+            top++;
+        }
+        int bottom = height;
+        while (bottom > height - height / 4 && isBar(argbReader, 0, bottom - 1, width, bottom)) {
+            bottom--;
+        }
+        int left = 0;
+        while (left < width / 4 && isBar(argbReader, left, top, left + 1, bottom)) {
+            left++;
+        }
+        int right = width;
+        while (right > width - width / 4 && isBar(argbReader, right - 1, top, right, bottom)) {
+            right--;
+        }
+        int cropWidth = right - left;
+        int cropHeight = bottom - top;
+
+        double[] cells = new double[WIDTH * HEIGHT];
+        for (int cellY = 0; cellY < HEIGHT; cellY++) {
+            int y1 = top + cellY * cropHeight / HEIGHT;
+            int y2 = Math.max(y1 + 1, top + (cellY + 1) * cropHeight / HEIGHT);
+            for (int cellX = 0; cellX < WIDTH; cellX++) {
+                int x1 = left + cellX * cropWidth / WIDTH;
+                int x2 = Math.max(x1 + 1, left + (cellX + 1) * cropWidth / WIDTH);
+                cells[cellY * WIDTH + cellX] = getMeanLuminance(argbReader, x1, y1, x2, y2);
+            }
+        }
+        long hash = 0;
+        for (int cellY = 0; cellY < HEIGHT; cellY++) {
+            for (int cellX = 0; cellX < WIDTH - 1; cellX++) {
+                hash <<= 1;
+                if (cells[cellY * WIDTH + cellX] > cells[cellY * WIDTH + cellX + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    static int distance(long hash1, long hash2) {
+        return Long.bitCount(hash1 ^ hash2);
+    }
+
+    // Whether all pixels of the area are nearly black
+    private static boolean isBar(IntBinaryOperator argbReader, int x1, int y1, int x2, int y2) {
+        for (int y = y1; y < y2; y++) {
+            for (int x = x1; x < x2; x++) {
+                if (getLuminance(argbReader.applyAsInt(x, y)) > BAR_LUMINANCE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static double getMeanLuminance(IntBinaryOperator argbReader, int x1, int y1, int x2, int y2) {
+        int stepX = Math.max(1, (x2 - x1) / SAMPLE_COUNT);
+        int stepY = Math.max(1, (y2 - y1) / SAMPLE_COUNT);
+        double sum = 0;
+        int count = 0;
+        for (int y = y1; y < y2; y += stepY) {
+            for (int x = x1; x < x2; x += stepX) {
+                sum += getLuminance(argbReader.applyAsInt(x, y));
+                count++;
+            }
+        }
+        return sum / count;
+    }
+
+    private static double getLuminance(int argb) {
+        return 0.299 * ((argb >> 16) & 0xFF) + 0.587 * ((argb >> 8) & 0xFF) + 0.114 * (argb & 0xFF);
+    }
+}
@@ -1,40 +1,166 @@
 package com.forman.limo;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 public class StringReplacer {
-    private static String REGEX = "(\\{[^}]+\\})";
-    private static Pattern PATTERN = Pattern.compile(REGEX);
-    private static Map<String, Integer> INDEX_NAMES = new HashMap<String, Integer>() {{
-        for (int i = 1; i <= 100; i++) {
-            put(String.format("{%0" + i + "dN}", 0), i + 1);
-        }
-    }};
+    private static final int MAX_INDEX_WIDTH = 101;
 
     public static String replace(String pattern, int index, Map<String, String> replacements) {
-        StringBuffer sb = new StringBuffer();
-        Matcher m = PATTERN.matcher(pattern);
-        while (m.find()) {
-            String group = m.group(1);
-            if (group != null) {
-                String replacement = null;
-                if (group.equalsIgnoreCase("{N}")) {
-                    replacement = Integer.toString(index);
-                } else if (INDEX_NAMES.containsKey(group)) {
-                    int n = INDEX_NAMES.get(group);
-                    replacement = String.format("%0" + n + "d", index);
-                } else {
-                    replacement = replacements.get(group);
+        return compile(pattern).render(index, replacements);
+    }
+
+    // Parses the pattern once, so that it can be rendered for many files
+    public static Template compile(String pattern) {
+        ArrayList<Token> tokens = new ArrayList<>();
+        int literalStart = 0;
+        int pos = 0;
+        while (pos < pattern.length()) {
+            int start = pattern.indexOf('{', pos);
+            if (start < 0) {
+                break;
+            }
+            int end = pattern.indexOf('}', start + 1);
+            if (end < 0) {
+                break;
+            }
+            if (end == start + 1) {
+                // "{}" is no token
+                pos = end + 1;
+                continue;
+            }
+            if (start > literalStart) {
+                tokens.add(Token.literal(pattern.substring(literalStart, start)));
+            }
+            tokens.add(parseToken(pattern.substring(start, end + 1)));
+            literalStart = end + 1;
+            pos = end + 1;
+        }
+        if (literalStart < pattern.length()) {
+            tokens.add(Token.literal(pattern.substring(literalStart)));
+        }
+        return new Template(tokens);
+    }
+
+    private static Token parseToken(String text) {
+        if (text.equalsIgnoreCase("{N}")) {
+            return Token.index(text, 0);
+        }
+        // "{0N}", "{00N}", ... pad the index with zeros to the number of zeros plus one
+        int zeroCount = text.length() - 3;
+        if (zeroCount > 0 && zeroCount < MAX_INDEX_WIDTH && text.charAt(text.length() - 2) == 'N') {
+            boolean zeros = true;
+            for (int i = 1; i <= zeroCount; i++) {
+                if (text.charAt(i) != '0') {
+                    zeros = false;
+                    break;
+                }
+            }
+            if (zeros) {
+                return Token.index(text, zeroCount + 1);
+            }
+        }
+        return Token.variable(text);
+    }
+
+    public static class Template {
+        private final Token[] tokens;
+        private final boolean usesIndex;
+        private final Set<String> variables;
+
+        private Template(List<Token> tokens) {
+            this.tokens = tokens.toArray(new Token[0]);
+            boolean usesIndex = false;
+            LinkedHashSet<String> variables = new LinkedHashSet<>();
+            for (Token token : tokens) {
+                if (token.kind == Token.INDEX) {
+                    usesIndex = true;
+                } else if (token.kind == Token.VARIABLE) {
+                    variables.add(token.text);
                 }
-                if (replacement != null) {
-                    m.appendReplacement(sb, replacement);
+            }
+            this.usesIndex = usesIndex;
+            this.variables = Collections.unmodifiableSet(variables);
+        }
+
+        public boolean usesIndex() {
+            return usesIndex;
+        }
+
+        // Variable names include the braces, e.g. "{NAME}"
+        public boolean uses(String variable) {
+            return variables.contains(variable);
+        }
+
+        public Set<String> getVariables() {
+            return variables;
+        }
+
+        public String render(int index, Map<String, String> replacements) {
+            StringBuilder sb = new StringBuilder();
+            render(index, replacements, sb);
+            return sb.toString();
+        }
+
+        // Appends to the given builder, variables without replacement are kept as they are
+        public void render(int index, Map<String, String> replacements, StringBuilder sb) {
+            for (Token token : tokens) {
+                if (token.kind == Token.LITERAL) {
+                    sb.append(token.text);
+                } else if (token.kind == Token.INDEX) {
+                    appendIndex(sb, index, token.width);
+                } else {
+                    String replacement = replacements.get(token.text);
+                    sb.append(replacement != null ? replacement : token.text);
                 }
             }
         }
-        m.appendTail(sb);
-        return sb.toString();
+
+        private static void appendIndex(StringBuilder sb, int index, int width) {
+            if (index < 0) {
+                sb.append(width > 0 ? String.format("%0" + width + "d", index) : Integer.toString(index));
+                return;
+            }
+            int digitCount = 1;
+            for (int i = index; i >= 10; i /= 10) {
+                digitCount++;
+            }
+            for (int i = digitCount; i < width; i++) {
+                sb.append('0');
+            }
+            sb.append(index);
+        }
+    }
+
+    private static class Token {
+        static final int LITERAL = 0;
+        static final int INDEX = 1;
+        static final int VARIABLE = 2;
+
+        final int kind;
+        final String text;
+        final int width;
+
+        private Token(int kind, String text, int width) {
+            this.kind = kind;
+            this.text = text;
+            this.width = width;
+        }
+
+        static Token literal(String text) {
+            return new Token(LITERAL, text, 0);
+        }
+
+        static Token index(String text, int width) {
+            return new Token(INDEX, text, width);
+        }
+
+        static Token variable(String text) {
+            return new Token(VARIABLE, text, 0);
+        }
     }
 }
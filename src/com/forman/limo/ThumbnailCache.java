@@ -0,0 +1,277 @@
+package com.forman.limo;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.forman.limo.AppInfo.DEBUG;
+
+public class ThumbnailCache {
+
+    private static final String FILE_EXTENSION = ".thumb";
+    private static final float JPEG_QUALITY = 0.9F;
+
+    private final Path directory;
+    private long maxSize;
+    // Cache file name --> cache file size, least recently used first
+    private LinkedHashMap<String, Long> entries;
+    private long size;
+
+    public ThumbnailCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    public static Path getDefaultDirectory() {
+        String osName = System.getProperty("os.name", "").toLowerCase();
+        String userHome = System.getProperty("user.home");
+        Path cacheDir;
+        if (osName.startsWith("windows") && System.getenv("LOCALAPPDATA") != null) {
+            cacheDir = Paths.get(System.getenv("LOCALAPPDATA"), AppInfo.NAME, "Cache");
+        } else if (osName.startsWith("mac")) {
+            cacheDir = Paths.get(userHome, "Library", "Caches", AppInfo.NAME);
+        } else if (System.getenv("XDG_CACHE_HOME") != null) {
+            cacheDir = Paths.get(System.getenv("XDG_CACHE_HOME"), AppInfo.NAME.toLowerCase());
+        } else {
+            cacheDir = Paths.get(userHome, ".cache", AppInfo.NAME.toLowerCase());
+        }
+        return cacheDir.resolve("thumbnails");
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        if (entries != null) {
+            evict();
+        }
+    }
+
+    public Image get(Path imageFile, double thumbnailSize) {
+        if (getMaxSize() <= 0) {
+            return null;
+        }
+        String name = getCacheFileName(imageFile, thumbnailSize);
+        if (name == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (getEntries().get(name) == null) {
+                return null;
+            }
+        }
+        Path cacheFile = directory.resolve(name);
+        Image image;
+        try (InputStream stream = Files.newInputStream(cacheFile)) {
+            image = new Image(stream);
+        } catch (IOException e) {
+            remove(name);
+            return null;
+        }
+        if (image.isError()) {
+            remove(name);
+            return null;
+        }
+        try {
+            // Remember access across sessions
+            Files.setLastModifiedTime(cacheFile, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // ok
+        }
+        return image;
+    }
+
+    public void put(Path imageFile, double thumbnailSize, Image image) {
+        if (getMaxSize() <= 0 || image == null || image.isError()) {
+            return;
+        }
+        String name = getCacheFileName(imageFile, thumbnailSize);
+        if (name == null) {
+            return;
+        }
+        Path cacheFile = directory.resolve(name);
+        long fileSize;
+        try {
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, "limo-", ".tmp");
+            try {
+                try (OutputStream stream = Files.newOutputStream(tempFile)) {
+                    writeImage(image, stream);
+                }
+                fileSize = Files.size(tempFile);
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            if (DEBUG) {
+                e.printStackTrace();
+            }
+            return;
+        }
+        synchronized (this) {
+            Long oldFileSize = getEntries().put(name, fileSize);
+            size += fileSize - (oldFileSize != null ? oldFileSize : 0L);
+            evict();
+        }
+    }
+
+    public synchronized void clear() {
+        for (String name : new ArrayList<>(getEntries().keySet())) {
+            deleteCacheFile(name);
+        }
+        entries.clear();
+        size = 0;
+    }
+
+    private synchronized void remove(String name) {
+        Long fileSize = getEntries().remove(name);
+        if (fileSize != null) {
+            size -= fileSize;
+            deleteCacheFile(name);
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            size -= eldest.getValue();
+            deleteCacheFile(eldest.getKey());
+        }
+    }
+
+    private void deleteCacheFile(String name) {
+        try {
+            Files.deleteIfExists(directory.resolve(name));
+        } catch (IOException e) {
+            // ok
+        }
+    }
+
+    private LinkedHashMap<String, Long> getEntries() {
+        if (entries == null) {
+            entries = new LinkedHashMap<>(1024, 0.75F, true);
+            size = 0;
+            List<CacheFile> cacheFiles = new ArrayList<>();
+            if (Files.isDirectory(directory)) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+                    for (Path file : stream) {
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        cacheFiles.add(new CacheFile(file.getFileName().toString(), attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    }
+                } catch (IOException e) {
+                    if (DEBUG) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            cacheFiles.sort((f1, f2) -> Long.compare(f1.lastAccess, f2.lastAccess));
+            for (CacheFile cacheFile : cacheFiles) {
+                entries.put(cacheFile.name, cacheFile.size);
+                size += cacheFile.size;
+            }
+            evict();
+        }
+        return entries;
+    }
+
+    private static String getCacheFileName(Path imageFile, double thumbnailSize) {
+        Path path = imageFile.toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        String key = path + "\n" + attributes.size() + "\n" + attributes.lastModifiedTime().toMillis() + "\n" + Math.round(thumbnailSize);
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder(2 * hash.length + FILE_EXTENSION.length());
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.append(FILE_EXTENSION).toString();
+    }
+
+    private static void writeImage(Image image, OutputStream stream) throws IOException {
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        PixelReader pixelReader = image.getPixelReader();
+        if (pixelReader == null || width <= 0 || height <= 0) {
+            throw new IOException("image has no pixels");
+        }
+        int[] pixels = new int[width * height];
+        pixelReader.getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        boolean opaque = true;
+        for (int pixel : pixels) {
+            if ((pixel >>> 24) != 0xFF) {
+                opaque = false;
+                break;
+            }
+        }
+        BufferedImage bufferedImage = new BufferedImage(width, height, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        bufferedImage.setRGB(0, 0, width, height, pixels, 0, width);
+        if (!opaque) {
+            // JavaFX detects the image format from the file's content, not its name
+            ImageIO.write(bufferedImage, "png", stream);
+            return;
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream imageStream = ImageIO.createImageOutputStream(stream)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(imageStream);
+            writer.write(null, new IIOImage(bufferedImage, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static class CacheFile {
+        final String name;
+        final long size;
+        final long lastAccess;
+
+        CacheFile(String name, long size, long lastAccess) {
+            this.name = name;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.forman.limo;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Named daemon threads, so that worker pools never keep the application alive
+class WorkerThreadFactory implements ThreadFactory {
+    private final String namePrefix;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    WorkerThreadFactory(String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, namePrefix + "-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -1,6 +1,10 @@
 package com.forman.limo.actions;
 
 public abstract class AbstractUndoableAction implements UndoableAction {
+    // Conservative size of an object reference or array element
+    protected static final int REFERENCE_SIZE = 8;
+    protected static final int INDEX_SIZE = 4;
+
     private Boolean done;
 
     @Override
@@ -40,6 +44,11 @@ public abstract class AbstractUndoableAction implements UndoableAction {
         done = true;
     }
 
+    @Override
+    public long getMemorySize() {
+        return 0;
+    }
+
     protected abstract boolean callImpl();
 
     protected abstract void undoImpl();
@@ -6,11 +6,14 @@ import com.forman.limo.data.Project;
 import java.nio.file.Path;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 
 public class AddAction extends AbstractUndoableAction {
     private final Project project;
     private final List<Path> newFiles;
+    // Whether newFiles has been reduced to the files that were not yet part of the album
+    private boolean filtered;
 
     public AddAction(Project project, List<Path> newFiles) {
         this.project = project;
@@ -24,17 +27,32 @@ public class AddAction extends AbstractUndoableAction {
 
     @Override
     public boolean callImpl() {
-        if (!newFiles.isEmpty()) {
+        if (!filtered) {
+            // Files already in the album must not be removed by undo
+            List<Path> addedFiles = project.addFiles(newFiles);
+            newFiles.clear();
+            newFiles.addAll(addedFiles);
+            filtered = true;
+        } else {
             project.addFiles(newFiles);
-            return true;
         }
-        return false;
+        return !newFiles.isEmpty();
+    }
+
+    // Adds further files as part of this action, e.g. files found later by a directory scan
+    public void addFiles(List<Path> files) {
+        newFiles.addAll(project.addFiles(files));
     }
 
     @Override
     public void undoImpl() {
         project.selectedImageFiles.removeAll(newFiles);
-        project.imageFiles.removeAll(newFiles);
+        project.update(() -> project.imageFiles.removeAll(new HashSet<>(newFiles)));
+    }
+
+    @Override
+    public long getMemorySize() {
+        return (long) REFERENCE_SIZE * newFiles.size();
     }
 
     @Override
@@ -6,12 +6,15 @@ import com.forman.limo.data.Project;
 import java.nio.file.Path;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 
 public class DeleteAction extends AbstractUndoableAction {
     private final Project project;
     private final List<Path> selectedFiles;
-    private List<Path> oldFiles;
+    // Indexes and files as they were before the removal
+    private int[] removedIndexes;
+    private List<Path> removedFiles;
 
     public DeleteAction(Project project, List<Path> selectedFiles) {
         this.project = project;
@@ -29,9 +32,13 @@ public class DeleteAction extends AbstractUndoableAction {
             List<Integer> imageFileIndexes = project.getImageFileIndexes(selectedFiles);
             Integer index = imageFileIndexes.get(0);
 
-            oldFiles = new ArrayList<>(project.imageFiles);
+            removedIndexes = imageFileIndexes.stream().mapToInt(Integer::intValue).filter(i -> i >= 0).toArray();
+            removedFiles = new ArrayList<>(removedIndexes.length);
+            for (int removedIndex : removedIndexes) {
+                removedFiles.add(project.imageFiles.get(removedIndex));
+            }
             project.selectedImageFiles.clear();
-            project.imageFiles.removeAll(selectedFiles);
+            project.update(() -> project.imageFiles.removeAll(new HashSet<>(selectedFiles)));
 
             if (index >= 0 && index < project.imageFiles.size()) {
                 project.selectedImageFiles.setAll(project.imageFiles.get(index));
@@ -46,10 +53,16 @@ public class DeleteAction extends AbstractUndoableAction {
     @Override
     public void undoImpl() {
         project.selectedImageFiles.clear();
-        project.imageFiles.setAll(oldFiles);
+        project.insertImageFiles(removedIndexes, removedFiles);
         project.selectedImageFiles.setAll(selectedFiles);
     }
 
+    @Override
+    public long getMemorySize() {
+        return (long) REFERENCE_SIZE * (selectedFiles.size() + (removedFiles != null ? removedFiles.size() : 0))
+                + (removedIndexes != null ? (long) INDEX_SIZE * removedIndexes.length : 0);
+    }
+
     @Override
     public void redoImpl() {
         call();
@@ -12,7 +12,9 @@ public class MoveDownAction extends AbstractUndoableAction {
     private final Project project;
     private final List<Path> selectedFiles;
     private final boolean moveToBottom;
-    private List<Path> oldFiles;
+    // Indexes of the moved files after the move
+    private int[] movedIndexes;
+    private int offset;
 
     public MoveDownAction(Project project, List<Path> selectedFiles, boolean moveToBottom) {
         this.project = project;
@@ -32,12 +34,9 @@ public class MoveDownAction extends AbstractUndoableAction {
             int indexN = selectedIndexes.get(selectedIndexes.size() - 1);
             int insertionStartIndex = moveToBottom ? project.imageFiles.size() - 1 : indexN + 1;
             if (insertionStartIndex >= 0 && insertionStartIndex < project.imageFiles.size()) {
-                oldFiles = new ArrayList<>(project.imageFiles);
-                for (int i = selectedIndexes.size() - 1; i >= 0; i--) {
-                    int index = selectedIndexes.get(i);
-                    Path movedPath = project.imageFiles.remove(index);
-                    project.imageFiles.add(insertionStartIndex - (indexN - index), movedPath);
-                }
+                offset = insertionStartIndex - indexN;
+                movedIndexes = selectedIndexes.stream().mapToInt(index -> index + offset).toArray();
+                project.moveImageFiles(selectedIndexes.stream().mapToInt(Integer::intValue).toArray(), offset);
                 return true;
             }
         }
@@ -46,7 +45,12 @@ public class MoveDownAction extends AbstractUndoableAction {
 
     @Override
     public void undoImpl() {
-        project.imageFiles.setAll(oldFiles);
+        project.moveImageFiles(movedIndexes, -offset);
+    }
+
+    @Override
+    public long getMemorySize() {
+        return (long) REFERENCE_SIZE * selectedFiles.size() + (movedIndexes != null ? (long) INDEX_SIZE * movedIndexes.length : 0);
     }
 
     @Override
@@ -12,7 +12,9 @@ public class MoveUpAction extends AbstractUndoableAction {
     private final Project project;
     private final List<Path> selectedFiles;
     private final boolean moveToTop;
-    private List<Path> oldFiles;
+    // Indexes of the moved files after the move
+    private int[] movedIndexes;
+    private int offset;
 
     public MoveUpAction(Project project, List<Path> selectedFiles, boolean moveToTop) {
         this.project = project;
@@ -32,11 +34,9 @@ public class MoveUpAction extends AbstractUndoableAction {
             int index0 = selectedIndexes.get(0);
             int insertionStartIndex = moveToTop ? 0 : index0 - 1;
             if (insertionStartIndex >= 0 && insertionStartIndex < project.imageFiles.size() - 1) {
-                oldFiles = new ArrayList<>(project.imageFiles);
-                for (int index : selectedIndexes) {
-                    Path movedPath = project.imageFiles.remove(index);
-                    project.imageFiles.add(insertionStartIndex + (index - index0), movedPath);
-                }
+                offset = insertionStartIndex - index0;
+                movedIndexes = selectedIndexes.stream().mapToInt(index -> index + offset).toArray();
+                project.moveImageFiles(selectedIndexes.stream().mapToInt(Integer::intValue).toArray(), offset);
                 return true;
             }
         }
@@ -45,7 +45,12 @@ public class MoveUpAction extends AbstractUndoableAction {
 
     @Override
     public void undoImpl() {
-        project.imageFiles.setAll(oldFiles);
+        project.moveImageFiles(movedIndexes, -offset);
+    }
+
+    @Override
+    public long getMemorySize() {
+        return (long) REFERENCE_SIZE * selectedFiles.size() + (movedIndexes != null ? (long) INDEX_SIZE * movedIndexes.length : 0);
     }
 
     @Override
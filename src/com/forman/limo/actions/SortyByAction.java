@@ -2,6 +2,7 @@ package com.forman.limo.actions;
 
 import com.forman.limo.AppInfo;
 import com.forman.limo.data.ImageItem;
+import com.forman.limo.data.ImageMetadata;
 import com.forman.limo.data.Project;
 
 import java.nio.file.Path;
@@ -11,7 +12,8 @@ import java.util.*;
 public class SortyByAction extends AbstractUndoableAction {
     private final Project project;
     private final ImageFileComparatorFactory comparatorFactory;
-    private List<Path> oldFiles;
+    // The file at sorted index i is the one at unsorted index order[i]
+    private int[] order;
 
     public SortyByAction(Project project, ImageFileComparatorFactory comparatorFactory) {
         this.project = project;
@@ -25,25 +27,42 @@ public class SortyByAction extends AbstractUndoableAction {
 
     @Override
     public boolean callImpl() {
-        oldFiles = new ArrayList<>(project.imageFiles);
-        ArrayList<Path> imageFiles = new ArrayList<>(project.imageFiles);
-        imageFiles.sort(comparatorFactory.create(project));
+        List<Path> imageFiles = project.imageFiles;
+        int[] ranks = comparatorFactory.createRanks(project, imageFiles);
+        // Rank and index packed into one primitive, so that sorting needs no comparator and
+        // files with equal keys keep their order
+        long[] sortedKeys = new long[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            sortedKeys[i] = (long) ranks[i] << 32 | i;
+        }
+        Arrays.parallelSort(sortedKeys);
+        int[] sortedIndexes = new int[sortedKeys.length];
         boolean change = false;
-        for (int i = 0; i < imageFiles.size(); i++) {
-            if (!imageFiles.get(i).equals(project.imageFiles.get(i))) {
+        for (int i = 0; i < sortedKeys.length; i++) {
+            sortedIndexes[i] = (int) sortedKeys[i];
+            if (sortedIndexes[i] != i) {
                 change = true;
-                break;
             }
         }
         if (change) {
-            project.imageFiles.setAll(imageFiles);
+            order = sortedIndexes;
+            project.reorderImageFiles(order);
         }
         return change;
     }
 
     @Override
     public void undoImpl() {
-        project.imageFiles.setAll(oldFiles);
+        int[] inverseOrder = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            inverseOrder[order[i]] = i;
+        }
+        project.reorderImageFiles(inverseOrder);
+    }
+
+    @Override
+    public long getMemorySize() {
+        return order != null ? (long) INDEX_SIZE * order.length : 0;
     }
 
     @Override
@@ -52,45 +71,71 @@ public class SortyByAction extends AbstractUndoableAction {
     }
 
     public final static ImageFileComparatorFactory FILENAME = new ImageFileComparatorFactory("Filename");
-    public final static ImageFileComparatorFactory DATE_TIME_ORIGINAL = new ImageFileComparatorFactory("Date/Time Original");
-    public final static ImageFileComparatorFactory DATE_TIME_DIGITIZED = new ImageFileComparatorFactory("Date/Time Digitized");
+    public final static ImageFileComparatorFactory DATE_TIME_ORIGINAL = new ImageFileComparatorFactory("Date/Time Original", FILENAME);
+    public final static ImageFileComparatorFactory DATE_TIME_DIGITIZED = new ImageFileComparatorFactory("Date/Time Digitized", FILENAME);
 
     public static class ImageFileComparatorFactory {
         final String tagName;
+        // Orders files with equal keys, may be null
+        final ImageFileComparatorFactory nextFactory;
 
         public ImageFileComparatorFactory(String tagName) {
+            this(tagName, null);
+        }
+
+        public ImageFileComparatorFactory(String tagName, ImageFileComparatorFactory nextFactory) {
             this.tagName = tagName;
+            this.nextFactory = nextFactory;
         }
 
         public String getTagName() {
             return tagName;
         }
 
-        public Comparator<Path> create(Project project) {
-            return (file1, file2) -> {
-                //Exif SubIFD
-                if (!tagName.equalsIgnoreCase("Filename")) {
-                    ImageItem imageItem1 = project.imageItems.get(file1);
-                    ImageItem imageItem2 = project.imageItems.get(file2);
-                    Map<String, Map<String, String>> metadata1 = imageItem1 != null ? imageItem1.metadata : null;
-                    Map<String, Map<String, String>> metadata2 = imageItem2 != null ? imageItem2.metadata : null;
-                    if (metadata1 != null && metadata2 != null) {
-                        Map<String, String> exifData1 = metadata1.get("Exif SubIFD");
-                        Map<String, String> exifData2 = metadata2.get("Exif SubIFD");
-                        if (exifData1 != null && exifData2 != null) {
-                            String value1 = exifData1.get(tagName);
-                            String value2 = exifData2.get(tagName);
-                            if (value1 != null && value2 != null) {
-                                try {
-                                    return value1.compareTo(value2);
-                                } catch (ClassCastException ignored) {
-                                }
-                            }
-                        }
-                    }
+        // The rank of each file's sort key among the keys of all files, equal keys have equal ranks
+        public int[] createRanks(Project project, List<Path> files) {
+            int[] ranks;
+            if (tagName.equalsIgnoreCase("Filename")) {
+                Path[] fileNames = new Path[files.size()];
+                for (int i = 0; i < fileNames.length; i++) {
+                    fileNames[i] = files.get(i).getFileName();
+                }
+                Path[] sortedFileNames = fileNames.clone();
+                Arrays.parallelSort(sortedFileNames);
+                ranks = new int[fileNames.length];
+                for (int i = 0; i < ranks.length; i++) {
+                    ranks[i] = Arrays.binarySearch(sortedFileNames, fileNames[i]);
                 }
-                return file1.getFileName().compareTo(file2.getFileName());
-            };
+            } else {
+                // Exif SubIFD, files without date/time go last
+                long[] dateTimes = new long[files.size()];
+                for (int i = 0; i < dateTimes.length; i++) {
+                    ImageItem imageItem = project.imageItems.get(files.get(i));
+                    ImageMetadata metadata = imageItem != null ? imageItem.metadata : null;
+                    dateTimes[i] = metadata != null ? metadata.getDateTime("Exif SubIFD", tagName, Long.MAX_VALUE) : Long.MAX_VALUE;
+                }
+                ranks = rank(dateTimes);
+            }
+            if (nextFactory != null) {
+                int[] nextRanks = nextFactory.createRanks(project, files);
+                long[] keys = new long[ranks.length];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = (long) ranks[i] * ranks.length + nextRanks[i];
+                }
+                ranks = rank(keys);
+            }
+            return ranks;
+        }
+
+        // Binary search finds the same position for equal keys
+        private static int[] rank(long[] keys) {
+            long[] sortedKeys = keys.clone();
+            Arrays.parallelSort(sortedKeys);
+            int[] ranks = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                ranks[i] = Arrays.binarySearch(sortedKeys, keys[i]);
+            }
+            return ranks;
         }
     }
 
@@ -9,9 +9,49 @@ import java.util.List;
 public class UndoList implements Observable {
     private final List<UndoableAction> actionList = new ArrayList<>();
     private int actionIndex = -1;
+    private int maxActionCount;
+    private long maxMemorySize;
     private final ArrayList<InvalidationListener> invalidationListeners = new ArrayList<>();
 
     public UndoList() {
+        this(Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    // The oldest actions are dropped if there are more than maxActionCount or if all actions
+    // hold more than maxMemorySize bytes. Only done actions are dropped, the most recent one is always kept.
+    public UndoList(int maxActionCount, long maxMemorySize) {
+        this.maxActionCount = maxActionCount;
+        this.maxMemorySize = maxMemorySize;
+    }
+
+    public int getMaxActionCount() {
+        return maxActionCount;
+    }
+
+    public void setMaxActionCount(int maxActionCount) {
+        this.maxActionCount = maxActionCount;
+        trim();
+    }
+
+    public long getMaxMemorySize() {
+        return maxMemorySize;
+    }
+
+    public void setMaxMemorySize(long maxMemorySize) {
+        this.maxMemorySize = maxMemorySize;
+        trim();
+    }
+
+    public int size() {
+        return actionList.size();
+    }
+
+    public long getMemorySize() {
+        long memorySize = 0;
+        for (UndoableAction action : actionList) {
+            memorySize += action.getMemorySize();
+        }
+        return memorySize;
     }
 
     public boolean canUndo() {
@@ -22,6 +62,11 @@ public class UndoList implements Observable {
         return !actionList.isEmpty() && isValidActionIndex(actionIndex + 1) && actionList.get(actionIndex + 1).canRedo();
     }
 
+    // The action that would be undone next, or null
+    public UndoableAction getUndoAction() {
+        return isValidActionIndex(actionIndex) ? actionList.get(actionIndex) : null;
+    }
+
     public void clear() {
         actionList.clear();
         actionIndex = -1;
@@ -31,8 +76,9 @@ public class UndoList implements Observable {
     public void add(UndoableAction action) {
         assert action.canUndo();
         actionIndex++;
-        actionList.removeAll(actionList.subList(actionIndex, actionList.size()));
+        actionList.subList(actionIndex, actionList.size()).clear();
         actionList.add(action);
+        trim();
         notifyInvalidationListeners();
     }
 
@@ -58,6 +104,22 @@ public class UndoList implements Observable {
         }
     }
 
+    // Drops the oldest actions beyond the budget, also to be called if a done action has grown
+    public void trim() {
+        long memorySize = getMemorySize();
+        int removeCount = 0;
+        while (removeCount < actionIndex
+                && (actionList.size() - removeCount > maxActionCount || memorySize > maxMemorySize)) {
+            memorySize -= actionList.get(removeCount).getMemorySize();
+            removeCount++;
+        }
+        if (removeCount > 0) {
+            actionList.subList(0, removeCount).clear();
+            actionIndex -= removeCount;
+            notifyInvalidationListeners();
+        }
+    }
+
     private void notifyInvalidationListeners() {
         InvalidationListener[] listeners = this.invalidationListeners.toArray(new InvalidationListener[0]);
         for (InvalidationListener listener : listeners) {
@@ -8,4 +8,6 @@ public interface UndoableAction extends Callable<Boolean>, Action {
     boolean canRedo();
     void undo() throws Exception;
     void redo() throws Exception;
+    // Estimated number of bytes held for undo/redo
+    long getMemorySize();
 }
@@ -0,0 +1,280 @@
+package com.forman.limo.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// Content hashes of the album's image files, used to recognize byte-identical files on import
+// without reading known files again. Files are compared in tiers, each only computed when the
+// previous one matched: the size, a hash of the first and last block, and a hash of the whole
+// file. Hashes are computed through memory-mapped windows of the file and stored in the album.
+// All methods are thread-safe.
+public class ContentHashIndex {
+
+    private static final int MAGIC = 0x4C494D43;
+    private static final int VERSION = 1;
+    static final int BLOCK_SIZE = 64 * 1024;
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+
+    private static final int HEAD_TAIL_HASHED = 1;
+    private static final int FULL_HASHED = 2;
+
+    private final HashMap<Path, Entry> entries = new HashMap<>();
+
+    static class Entry {
+        final long size;
+        final long lastModified;
+        int flags;
+        long headTailHash;
+        long fullHash;
+
+        Entry(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    // Returns a filter that passes only files not identical to the given files nor to each other
+    public Filter newFilter(List<Path> knownFiles) {
+        return new Filter(knownFiles);
+    }
+
+    public class Filter {
+        private final List<Path> knownFiles;
+        private HashMap<Long, List<Path>> filesBySize;
+        private int skippedCount;
+
+        Filter(List<Path> knownFiles) {
+            this.knownFiles = new ArrayList<>(knownFiles);
+        }
+
+        public List<Path> filter(List<Path> files) {
+            if (filesBySize == null) {
+                // Sizes of known files are taken from the index, they are checked once they matter
+                filesBySize = new HashMap<>();
+                for (Path file : knownFiles) {
+                    Entry entry = getEntry(file, false);
+                    if (entry != null) {
+                        filesBySize.computeIfAbsent(entry.size, size -> new ArrayList<>()).add(file);
+                    }
+                }
+            }
+            ArrayList<Path> passedFiles = new ArrayList<>(files.size());
+            for (Path file : files) {
+                Entry entry = getEntry(file, true);
+                if (entry == null) {
+                    passedFiles.add(file);
+                    continue;
+                }
+                List<Path> sameSizeFiles = filesBySize.computeIfAbsent(entry.size, size -> new ArrayList<>());
+                if (sameSizeFiles.contains(file)) {
+                    // Not added twice anyway
+                    passedFiles.add(file);
+                } else if (findIdenticalFile(file, sameSizeFiles) != null) {
+                    skippedCount++;
+                } else {
+                    sameSizeFiles.add(file);
+                    passedFiles.add(file);
+                }
+            }
+            return passedFiles;
+        }
+
+        public int getSkippedCount() {
+            return skippedCount;
+        }
+    }
+
+    // Returns the first of the given files with the same content as the file, if any
+    Path findIdenticalFile(Path file, List<Path> candidateFiles) {
+        for (Path candidateFile : candidateFiles) {
+            if (isIdentical(file, candidateFile)) {
+                return candidateFile;
+            }
+        }
+        return null;
+    }
+
+    boolean isIdentical(Path file1, Path file2) {
+        Entry entry1 = getEntry(file1, true);
+        Entry entry2 = getEntry(file2, true);
+        if (entry1 == null || entry2 == null || entry1.size != entry2.size) {
+            return false;
+        }
+        try {
+            if (getHeadTailHash(file1, entry1) != getHeadTailHash(file2, entry2)) {
+                return false;
+            }
+            // Files up to two blocks have been hashed completely already
+            return entry1.size <= 2 * BLOCK_SIZE || getFullHash(file1, entry1) == getFullHash(file2, entry2);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Indexed entries are checked against the file system if requested only
+    private Entry getEntry(Path file, boolean check) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(file);
+        }
+        if (entry != null && !check) {
+            return entry;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        if (entry != null && entry.size == attributes.size() && entry.lastModified == attributes.lastModifiedTime().toMillis()) {
+            return entry;
+        }
+        entry = new Entry(attributes.size(), attributes.lastModifiedTime().toMillis());
+        synchronized (this) {
+            entries.put(file, entry);
+        }
+        return entry;
+    }
+
+    private long getHeadTailHash(Path file, Entry entry) throws IOException {
+        synchronized (this) {
+            if ((entry.flags & HEAD_TAIL_HASHED) != 0) {
+                return entry.headTailHash;
+            }
+        }
+        long hash;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            hash = hash(channel, 0, Math.min(size, BLOCK_SIZE), size);
+            if (size > BLOCK_SIZE) {
+                long tailPosition = Math.max(BLOCK_SIZE, size - BLOCK_SIZE);
+                hash = hash(channel, tailPosition, size - tailPosition, hash);
+            }
+        }
+        synchronized (this) {
+            entry.headTailHash = hash;
+            entry.flags |= HEAD_TAIL_HASHED;
+        }
+        return hash;
+    }
+
+    private long getFullHash(Path file, Entry entry) throws IOException {
+        synchronized (this) {
+            if ((entry.flags & FULL_HASHED) != 0) {
+                return entry.fullHash;
+            }
+        }
+        long hash = hash(file);
+        synchronized (this) {
+            entry.fullHash = hash;
+            entry.flags |= FULL_HASHED;
+        }
+        return hash;
+    }
+
+    // Hash of the whole file's content
+    public static long hash(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return hash(channel, 0, channel.size(), channel.size());
+        }
+    }
+
+    // Hashes the given range of the file, mapping at most WINDOW_SIZE bytes at a time
+    static long hash(FileChannel channel, long position, long length, long seed) throws IOException {
+        long hash = seed * PRIME1 + PRIME4;
+        long end = position + length;
+        while (position < end) {
+            // Windows are multiples of 8 bytes, except for the last one
+            long windowSize = Math.min(WINDOW_SIZE, end - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.remaining() >= 8) {
+                hash = Long.rotateLeft(hash ^ mix(buffer.getLong()), 27) * PRIME1 + PRIME4;
+            }
+            while (buffer.hasRemaining()) {
+                hash = Long.rotateLeft(hash ^ (buffer.get() & 0xFF) * PRIME3, 11) * PRIME1;
+            }
+            position += windowSize;
+        }
+        hash ^= length;
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long mix(long value) {
+        return Long.rotateLeft(value * PRIME2, 31) * PRIME1;
+    }
+
+    // Entries refer to the files by their index in the album's file list
+    synchronized void write(DataOutputStream out, List<Path> files) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        for (int i = 0; i < files.size(); i++) {
+            Entry entry = entries.get(files.get(i));
+            if (entry == null) {
+                continue;
+            }
+            out.writeInt(i);
+            out.writeLong(entry.size);
+            out.writeLong(entry.lastModified);
+            out.writeByte(entry.flags);
+            if ((entry.flags & HEAD_TAIL_HASHED) != 0) {
+                out.writeLong(entry.headTailHash);
+            }
+            if ((entry.flags & FULL_HASHED) != 0) {
+                out.writeLong(entry.fullHash);
+            }
+        }
+        out.writeInt(-1);
+        out.flush();
+    }
+
+    // Entries are not checked against the file system here, but once they are used
+    synchronized void read(DataInputStream in, List<Path> files) throws IOException {
+        entries.clear();
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return;
+        }
+        HashMap<Path, Entry> readEntries = new HashMap<>();
+        int index;
+        while ((index = in.readInt()) >= 0) {
+            if (index >= files.size()) {
+                throw new IOException("invalid file index " + index);
+            }
+            Entry entry = new Entry(in.readLong(), in.readLong());
+            entry.flags = in.readUnsignedByte() & (HEAD_TAIL_HASHED | FULL_HASHED);
+            if ((entry.flags & HEAD_TAIL_HASHED) != 0) {
+                entry.headTailHash = in.readLong();
+            }
+            if ((entry.flags & FULL_HASHED) != 0) {
+                entry.fullHash = in.readLong();
+            }
+            readEntries.put(files.get(index), entry);
+        }
+        entries.putAll(readEntries);
+    }
+}
@@ -4,11 +4,22 @@ public class Defaults {
     public static final String TARGET_DIR_NAME = "limo-export";
     public static final String TARGET_FILE_NAME_PATTERN = "IMAG{000N}";
     public static final int TARGET_FILE_START_INDEX = 1;
+    public static final boolean TARGET_INCREMENTAL = true;
+    public static final boolean TARGET_LINK_FILES = false;
     public static final boolean RELATIVIZE_PATHS = true;
     public static final boolean SCAN_RECURSIVE = false;
+    public static final boolean SKIP_IDENTICAL_FILES = false;
     public static final String IMAGE_FILE_NAME_EXT = "jpg, png, gif";
     public static final double IMAGE_DISPLAY_SIZE_RATIO = 0.5;
     public static final int MIN_IMAGE_DISPLAY_SIZE = 48;
     public static final int MAX_IMAGE_DISPLAY_SIZE = 360;
     public static final boolean OPEN_LAST_PROJECT = false;
+    public static final int METADATA_READER_COUNT = 2;
+    public static final int IMAGE_DECODER_COUNT = Runtime.getRuntime().availableProcessors();
+    public static final int COPY_WORKER_COUNT = 4;
+    public static final int THUMBNAIL_CACHE_SIZE = 512;
+    public static final boolean USE_EMBEDDED_THUMBNAILS = true;
+    public static final int IMAGE_CACHE_SIZE = 256;
+    public static final int UNDO_ACTION_COUNT = 1000;
+    public static final int UNDO_MEMORY_SIZE = 64;
 }
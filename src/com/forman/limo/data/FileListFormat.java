@@ -0,0 +1,179 @@
+package com.forman.limo.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// Binary album file list (album version 2). Each directory is stored once, each file as the index
+// of its directory plus its UTF-8 name. Files are grouped into chunks whose offsets are stored in
+// front of them, so that the chunks can be decoded in parallel.
+//
+//   int magic, int version, int fileCount
+//   int directoryCount, directoryCount x string
+//   int chunkCount, chunkCount x int offset (relative to the first chunk)
+//   fileCount x (varint directory index, string name), CHUNK_SIZE files per chunk
+//
+// Strings are stored as varint length plus UTF-8 bytes.
+class FileListFormat {
+
+    private static final int MAGIC = 0x4C494D46;
+    private static final int VERSION = 2;
+    private static final int CHUNK_SIZE = 4096;
+
+    static void write(OutputStream outputStream, List<Path> files, Path projectDir, boolean relativizePaths) throws IOException {
+        HashMap<String, Integer> directoryIndexes = new HashMap<>();
+        ByteArrayOutputStream directoryData = new ByteArrayOutputStream();
+        ByteArrayOutputStream fileData = new ByteArrayOutputStream(16 * files.size());
+        int chunkCount = (files.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int[] chunkOffsets = new int[chunkCount];
+        for (int i = 0; i < files.size(); i++) {
+            if (i % CHUNK_SIZE == 0) {
+                chunkOffsets[i / CHUNK_SIZE] = fileData.size();
+            }
+            Path file = files.get(i);
+            Path storedFile = relativizePaths ? projectDir.relativize(file) : file;
+            Path directory = storedFile.getParent();
+            String directoryName = directory != null ? directory.toString() : "";
+            Integer directoryIndex = directoryIndexes.get(directoryName);
+            if (directoryIndex == null) {
+                directoryIndex = directoryIndexes.size();
+                directoryIndexes.put(directoryName, directoryIndex);
+                writeString(directoryData, directoryName);
+            }
+            writeVarInt(fileData, directoryIndex);
+            writeString(fileData, storedFile.getFileName().toString());
+        }
+
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(files.size());
+        out.writeInt(directoryIndexes.size());
+        directoryData.writeTo(out);
+        out.writeInt(chunkCount);
+        for (int chunkOffset : chunkOffsets) {
+            out.writeInt(chunkOffset);
+        }
+        fileData.writeTo(out);
+        out.flush();
+    }
+
+    static List<Path> read(InputStream inputStream, Path projectDir) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not an album file list");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported album file list version " + version);
+        }
+        int fileCount = in.readInt();
+        int directoryCount = in.readInt();
+        if (directoryCount < 0) {
+            throw new IOException("invalid album file list");
+        }
+        Path[] directories = new Path[directoryCount];
+        for (int i = 0; i < directoryCount; i++) {
+            directories[i] = projectDir.resolve(Paths.get(readString(in)));
+        }
+        int chunkCount = in.readInt();
+        if (fileCount < 0 || chunkCount != (fileCount + CHUNK_SIZE - 1) / CHUNK_SIZE) {
+            throw new IOException("invalid album file list");
+        }
+        int[] chunkOffsets = new int[chunkCount + 1];
+        for (int i = 0; i < chunkCount; i++) {
+            chunkOffsets[i] = in.readInt();
+        }
+        byte[] fileData = readAll(in);
+        chunkOffsets[chunkCount] = fileData.length;
+
+        Path[] files = new Path[fileCount];
+        try {
+            IntStream.range(0, chunkCount).parallel().forEach(chunkIndex -> {
+                ByteBuffer buffer = ByteBuffer.wrap(fileData, chunkOffsets[chunkIndex], chunkOffsets[chunkIndex + 1] - chunkOffsets[chunkIndex]);
+                int end = Math.min(fileCount, (chunkIndex + 1) * CHUNK_SIZE);
+                for (int i = chunkIndex * CHUNK_SIZE; i < end; i++) {
+                    Path directory = directories[readVarInt(buffer)];
+                    files[i] = directory.resolve(readString(buffer));
+                }
+            });
+        } catch (RuntimeException e) {
+            throw new IOException("invalid album file list", e);
+        }
+        return Arrays.asList(files);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("invalid varint");
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = readVarInt(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalStateException("invalid string length");
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 32);
+        if (value < 0) {
+            throw new IOException("invalid string length");
+        }
+        byte[] bytes = new byte[value];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
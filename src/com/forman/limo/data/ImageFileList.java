@@ -0,0 +1,161 @@
+package com.forman.limo.data;
+
+import com.sun.javafx.collections.ObservableListWrapper;
+import javafx.collections.ListChangeListener;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+// Observable file list whose modifications can be grouped into a single change.
+// Also maintains a file --> index lookup for lists of distinct files.
+class ImageFileList extends ObservableListWrapper<Path> {
+
+    private final List<Path> list;
+    // Valid for all indexes below indexedCount, extended on demand. Changes only
+    // invalidate the indexes from their first changed position on.
+    private final HashMap<Path, Integer> indexes = new HashMap<>();
+    private int indexedCount;
+
+    ImageFileList(List<Path> list) {
+        super(list);
+        this.list = list;
+        // Registered first, so that all other listeners already get valid indexes
+        addListener(this::invalidateIndexes);
+    }
+
+    int getIndex(Path file) {
+        Integer index = indexes.get(file);
+        // Entries of removed files may still be there
+        if (index != null && index < indexedCount && get(index).equals(file)) {
+            return index;
+        }
+        int size = size();
+        while (indexedCount < size) {
+            Path indexedFile = get(indexedCount);
+            indexes.put(indexedFile, indexedCount);
+            indexedCount++;
+            if (indexedFile.equals(file)) {
+                return indexedCount - 1;
+            }
+        }
+        return -1;
+    }
+
+    // Moves the files at the given ascending indexes by offset positions, all other files
+    // keep their order. Fires a single permutation change covering only the affected range.
+    void move(int[] indexes, int offset) {
+        if (indexes.length == 0 || offset == 0) {
+            return;
+        }
+        int firstIndex = indexes[0];
+        int lastIndex = indexes[indexes.length - 1];
+        if (firstIndex + offset < 0 || lastIndex + offset >= list.size()) {
+            throw new IndexOutOfBoundsException("offset " + offset + " moves files out of list");
+        }
+        int from = Math.min(firstIndex, firstIndex + offset);
+        int to = Math.max(lastIndex, lastIndex + offset) + 1;
+        Path[] movedFiles = new Path[to - from];
+        boolean[] selected = new boolean[to - from];
+        int[] permutation = new int[to - from];
+        for (int index : indexes) {
+            movedFiles[index + offset - from] = list.get(index);
+            selected[index - from] = true;
+            permutation[index - from] = index + offset;
+        }
+        int newIndex = from;
+        for (int index = from; index < to; index++) {
+            if (!selected[index - from]) {
+                while (movedFiles[newIndex - from] != null) {
+                    newIndex++;
+                }
+                movedFiles[newIndex - from] = list.get(index);
+                permutation[index - from] = newIndex;
+            }
+        }
+        for (int index = from; index < to; index++) {
+            list.set(index, movedFiles[index - from]);
+        }
+        beginChange();
+        nextPermutation(from, to, permutation);
+        endChange();
+    }
+
+    // Inserts the files at the given ascending indexes, which refer to the resulting list.
+    // Fires a single change.
+    void insert(int[] indexes, List<Path> files) {
+        if (indexes.length == 0) {
+            return;
+        }
+        int size = list.size() + indexes.length;
+        if (indexes[indexes.length - 1] >= size) {
+            throw new IndexOutOfBoundsException("index " + indexes[indexes.length - 1] + " exceeds list size " + size);
+        }
+        Path[] newFiles = new Path[size];
+        for (int i = 0; i < indexes.length; i++) {
+            newFiles[indexes[i]] = files.get(i);
+        }
+        int oldIndex = 0;
+        for (int newIndex = 0; newIndex < size; newIndex++) {
+            if (newFiles[newIndex] == null) {
+                newFiles[newIndex] = list.get(oldIndex++);
+            }
+        }
+        list.clear();
+        list.addAll(Arrays.asList(newFiles));
+        beginChange();
+        for (int index : indexes) {
+            nextAdd(index, index + 1);
+        }
+        endChange();
+    }
+
+    // Rearranges the list so that the file at new index i is the one at old index order[i].
+    // Fires a single permutation change.
+    void reorder(int[] order) {
+        int size = list.size();
+        if (order.length != size) {
+            throw new IllegalArgumentException("order must have list size " + size);
+        }
+        Path[] newFiles = new Path[size];
+        int[] permutation = new int[size];
+        for (int newIndex = 0; newIndex < size; newIndex++) {
+            newFiles[newIndex] = list.get(order[newIndex]);
+            permutation[order[newIndex]] = newIndex;
+        }
+        for (int index = 0; index < size; index++) {
+            list.set(index, newFiles[index]);
+        }
+        beginChange();
+        nextPermutation(0, size, permutation);
+        endChange();
+    }
+
+    // Batches may be nested, listeners are notified when the outermost batch ends
+    void beginBatch() {
+        beginChange();
+    }
+
+    void endBatch() {
+        endChange();
+    }
+
+    private void invalidateIndexes(ListChangeListener.Change<? extends Path> change) {
+        while (change.next()) {
+            int from = change.getFrom();
+            if (change.wasPermutated()) {
+                // Only the files within the permuted range have moved
+                int end = Math.min(change.getTo(), indexedCount);
+                for (int i = from; i < end; i++) {
+                    indexes.put(get(i), i);
+                }
+            } else if (!change.wasUpdated() && from < indexedCount) {
+                indexedCount = from;
+            }
+        }
+        if (indexedCount == 0) {
+            indexes.clear();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.forman.limo.data;
+
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.Tag;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// Compact copy of an image's metadata, immutable except for the recorded state of its file. Directory and tag names are interned and shared
+// by all images, numbers and date/times are kept as primitives, display strings are only
+// rendered on request. Entries are sorted by directory name and tag name.
+public class ImageMetadata {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte FLOAT = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte DATE_TIME = 6;
+    private static final byte BINARY = 7;
+    private static final byte OBJECT = 8;
+
+    // Larger byte arrays such as maker notes and ICC profiles are not kept, only their size
+    private static final int MAX_BYTE_ARRAY_LENGTH = 64;
+    // Exif date/time format "yyyy:MM:dd HH:mm:ss"
+    private static final int DATE_TIME_LENGTH = 19;
+
+    private final String[] directoryNames;
+    private final String[] tagNames;
+    private final byte[] kinds;
+    private final long[] numbers;
+    private final Object[] objects;
+    // Size and modification time of the image file when the metadata was read, -1 if unknown
+    long fileSize = -1;
+    long fileLastModified = -1;
+
+    private ImageMetadata(int size) {
+        directoryNames = new String[size];
+        tagNames = new String[size];
+        kinds = new byte[size];
+        numbers = new long[size];
+        objects = new Object[size];
+    }
+
+    public static ImageMetadata of(Metadata metadata) {
+        ArrayList<Object[]> entries = new ArrayList<>();
+        for (Directory directory : metadata.getDirectories()) {
+            String directoryName = directory.getName().intern();
+            for (Tag tag : directory.getTags()) {
+                entries.add(new Object[]{directoryName, tag.getTagName().intern(), directory.getObject(tag.getTagType())});
+            }
+        }
+        // Stable, so that of equally named tags the last one wins
+        entries.sort(Comparator.comparing((Object[] entry) -> (String) entry[0]).thenComparing(entry -> (String) entry[1]));
+        int size = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            if (i + 1 == entries.size() || compareKeys(entries.get(i), entries.get(i + 1)) != 0) {
+                size++;
+            }
+        }
+        ImageMetadata imageMetadata = new ImageMetadata(size);
+        int index = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            Object[] entry = entries.get(i);
+            if (i + 1 == entries.size() || compareKeys(entry, entries.get(i + 1)) != 0) {
+                imageMetadata.set(index++, (String) entry[0], (String) entry[1], entry[2]);
+            }
+        }
+        return imageMetadata;
+    }
+
+    // Records the current state of the file the metadata has been read from, not to be called
+    // from the FX application thread
+    public ImageMetadata recordFileState(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            fileSize = attributes.size();
+            fileLastModified = attributes.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            fileSize = -1;
+            fileLastModified = -1;
+        }
+        return this;
+    }
+
+    // Whether the file still has the recorded state, not to be called from the FX application thread
+    public boolean isUpToDate(Path file) {
+        if (fileSize < 0) {
+            return false;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.size() == fileSize && attributes.lastModifiedTime().toMillis() == fileLastModified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public int size() {
+        return kinds.length;
+    }
+
+    public String getDirectoryName(int index) {
+        return directoryNames[index];
+    }
+
+    public String getTagName(int index) {
+        return tagNames[index];
+    }
+
+    public String getDisplayValue(int index) {
+        long number = numbers[index];
+        Object object = objects[index];
+        switch (kinds[index]) {
+            case STRING:
+                return (String) object;
+            case LONG:
+                return Long.toString(number);
+            case FLOAT:
+                return Float.toString(Float.intBitsToFloat((int) number));
+            case DOUBLE:
+                return Double.toString(Double.longBitsToDouble(number));
+            case BOOLEAN:
+                return Boolean.toString(number != 0);
+            case DATE_TIME:
+                return formatDateTime(number);
+            case BINARY:
+                return "[" + number + " bytes]";
+            case OBJECT:
+                return toString(object);
+            default:
+                return "";
+        }
+    }
+
+    public int indexOf(String directoryName, String tagName) {
+        int low = 0;
+        int high = kinds.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int d = directoryNames[mid].compareTo(directoryName);
+            if (d == 0) {
+                d = tagNames[mid].compareTo(tagName);
+            }
+            if (d < 0) {
+                low = mid + 1;
+            } else if (d > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public String getDisplayValue(String directoryName, String tagName, String defaultValue) {
+        int index = indexOf(directoryName, tagName);
+        return index >= 0 ? getDisplayValue(index) : defaultValue;
+    }
+
+    // Returns the date/time in epoch seconds (UTC)
+    public long getDateTime(String directoryName, String tagName, long defaultValue) {
+        int index = indexOf(directoryName, tagName);
+        return index >= 0 && kinds[index] == DATE_TIME ? numbers[index] : defaultValue;
+    }
+
+    // Compares two values, date/times and numbers by value, everything else by display string
+    public static int compareValues(ImageMetadata metadata1, int index1, ImageMetadata metadata2, int index2) {
+        byte kind1 = metadata1.kinds[index1];
+        byte kind2 = metadata2.kinds[index2];
+        if (kind1 == DATE_TIME && kind2 == DATE_TIME || kind1 == LONG && kind2 == LONG) {
+            return Long.compare(metadata1.numbers[index1], metadata2.numbers[index2]);
+        }
+        if (metadata1.isNumber(index1) && metadata2.isNumber(index2)) {
+            return Double.compare(metadata1.getDouble(index1), metadata2.getDouble(index2));
+        }
+        return metadata1.getDisplayValue(index1).compareTo(metadata2.getDisplayValue(index2));
+    }
+
+    // Writes the values of the given tags only. Values that have no compact form are left out.
+    void write(DataOutput out, String[][] tags) throws IOException {
+        int[] indexes = new int[tags.length];
+        int count = 0;
+        for (String[] tag : tags) {
+            int index = indexOf(tag[0], tag[1]);
+            if (index >= 0 && kinds[index] != OBJECT && kinds[index] != BINARY) {
+                indexes[count++] = index;
+            }
+        }
+        // Keeps the entries sorted
+        Arrays.sort(indexes, 0, count);
+        out.writeByte(count);
+        for (int i = 0; i < count; i++) {
+            int index = indexes[i];
+            int tagIndex = 0;
+            while (!tags[tagIndex][0].equals(directoryNames[index]) || !tags[tagIndex][1].equals(tagNames[index])) {
+                tagIndex++;
+            }
+            out.writeByte(tagIndex);
+            out.writeByte(kinds[index]);
+            if (kinds[index] == STRING) {
+                out.writeUTF((String) objects[index]);
+            } else if (kinds[index] != NULL) {
+                out.writeLong(numbers[index]);
+            }
+        }
+    }
+
+    static ImageMetadata read(DataInput in, String[][] tags) throws IOException {
+        ImageMetadata metadata = new ImageMetadata(in.readUnsignedByte());
+        for (int index = 0; index < metadata.size(); index++) {
+            String[] tag = tags[in.readUnsignedByte()];
+            byte kind = in.readByte();
+            if (kind < NULL || kind > DATE_TIME) {
+                throw new IOException("invalid metadata value kind " + kind);
+            }
+            metadata.directoryNames[index] = tag[0];
+            metadata.tagNames[index] = tag[1];
+            metadata.kinds[index] = kind;
+            if (kind == STRING) {
+                metadata.objects[index] = in.readUTF();
+            } else if (kind != NULL) {
+                metadata.numbers[index] = in.readLong();
+            }
+        }
+        return metadata;
+    }
+
+    private boolean isNumber(int index) {
+        byte kind = kinds[index];
+        return kind == LONG || kind == FLOAT || kind == DOUBLE;
+    }
+
+    private double getDouble(int index) {
+        switch (kinds[index]) {
+            case LONG:
+                return numbers[index];
+            case FLOAT:
+                return Float.intBitsToFloat((int) numbers[index]);
+            default:
+                return Double.longBitsToDouble(numbers[index]);
+        }
+    }
+
+    private void set(int index, String directoryName, String tagName, Object value) {
+        directoryNames[index] = directoryName;
+        tagNames[index] = tagName;
+        if (value == null) {
+            kinds[index] = NULL;
+        } else if (value instanceof String) {
+            String text = (String) value;
+            long dateTime = parseDateTime(text);
+            if (dateTime != Long.MIN_VALUE) {
+                kinds[index] = DATE_TIME;
+                numbers[index] = dateTime;
+            } else {
+                kinds[index] = STRING;
+                objects[index] = text;
+            }
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            kinds[index] = LONG;
+            numbers[index] = ((Number) value).longValue();
+        } else if (value instanceof Float) {
+            kinds[index] = FLOAT;
+            numbers[index] = Float.floatToIntBits((Float) value);
+        } else if (value instanceof Double) {
+            kinds[index] = DOUBLE;
+            numbers[index] = Double.doubleToLongBits((Double) value);
+        } else if (value instanceof Boolean) {
+            kinds[index] = BOOLEAN;
+            numbers[index] = (Boolean) value ? 1 : 0;
+        } else if (value instanceof byte[] && ((byte[]) value).length > MAX_BYTE_ARRAY_LENGTH) {
+            kinds[index] = BINARY;
+            numbers[index] = ((byte[]) value).length;
+        } else {
+            kinds[index] = OBJECT;
+            objects[index] = value;
+        }
+    }
+
+    // Returns epoch seconds (UTC) of an Exif date/time, or Long.MIN_VALUE if the text is none
+    // or would not be rendered back identically
+    static long parseDateTime(String text) {
+        if (text.length() != DATE_TIME_LENGTH
+                || text.charAt(4) != ':' || text.charAt(7) != ':' || text.charAt(10) != ' '
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return Long.MIN_VALUE;
+        }
+        int year = parseDigits(text, 0, 4);
+        int month = parseDigits(text, 5, 7);
+        int day = parseDigits(text, 8, 10);
+        int hour = parseDigits(text, 11, 13);
+        int minute = parseDigits(text, 14, 16);
+        int second = parseDigits(text, 17, 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            long dateTime = LocalDateTime.of(year, month, day, hour, minute, second).toEpochSecond(ZoneOffset.UTC);
+            return formatDateTime(dateTime).equals(text) ? dateTime : Long.MIN_VALUE;
+        } catch (RuntimeException e) {
+            // e.g. February 30
+            return Long.MIN_VALUE;
+        }
+    }
+
+    static String formatDateTime(long dateTime) {
+        LocalDateTime localDateTime = LocalDateTime.ofEpochSecond(dateTime, 0, ZoneOffset.UTC);
+        return String.format("%04d:%02d:%02d %02d:%02d:%02d",
+                localDateTime.getYear(), localDateTime.getMonthValue(), localDateTime.getDayOfMonth(),
+                localDateTime.getHour(), localDateTime.getMinute(), localDateTime.getSecond());
+    }
+
+    private static int parseDigits(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = 10 * value + (c - '0');
+        }
+        return value;
+    }
+
+    private static int compareKeys(Object[] entry1, Object[] entry2) {
+        int d = ((String) entry1[0]).compareTo((String) entry2[0]);
+        return d != 0 ? d : ((String) entry1[1]).compareTo((String) entry2[1]);
+    }
+
+    private static String toString(Object value) {
+        if (value.getClass().isArray()) {
+            if (value instanceof byte[]) {
+                return Arrays.toString((byte[]) value);
+            } else if (value instanceof char[]) {
+                return Arrays.toString((char[]) value);
+            } else if (value instanceof boolean[]) {
+                return Arrays.toString((boolean[]) value);
+            } else if (value instanceof short[]) {
+                return Arrays.toString((short[]) value);
+            } else if (value instanceof int[]) {
+                return Arrays.toString((int[]) value);
+            } else if (value instanceof long[]) {
+                return Arrays.toString((long[]) value);
+            } else if (value instanceof float[]) {
+                return Arrays.toString((float[]) value);
+            } else if (value instanceof double[]) {
+                return Arrays.toString((double[]) value);
+            } else if (value instanceof Object[]) {
+                return Arrays.deepToString((Object[]) value);
+            }
+            return "";
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package com.forman.limo.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Binary index of the metadata an album needs for sorting and display, stored in the album file,
+// so that the images of an opened album need not be parsed again. Each entry keeps the size and
+// modification time its image file had when the metadata was read. Files are not accessed here,
+// entries are checked against their files in the background when the images are loaded.
+class MetadataIndex {
+
+    private static final int MAGIC = 0x4C494D49;
+    // Must be increased whenever TAGS changes
+    private static final int VERSION = 1;
+
+    // Image dimensions, capture date/times and orientation
+    private static final String[][] TAGS = {
+            {"JPEG", "Image Width"},
+            {"JPEG", "Image Height"},
+            {"Exif SubIFD", "Exif Image Width"},
+            {"Exif SubIFD", "Exif Image Height"},
+            {"PNG-IHDR", "Image Width"},
+            {"PNG-IHDR", "Image Height"},
+            {"GIF Header", "Image Width"},
+            {"GIF Header", "Image Height"},
+            {"Exif SubIFD", "Date/Time Original"},
+            {"Exif SubIFD", "Date/Time Digitized"},
+            {"Exif IFD0", "Orientation"},
+    };
+
+    // Entries refer to the files by their index in the album's file list
+    static void write(DataOutputStream out, List<Path> files, Map<Path, ImageItem> imageItems) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            ImageItem imageItem = imageItems.get(file);
+            // Metadata without recorded file state could never be checked
+            if (imageItem == null || imageItem.metadata == null || imageItem.metadata.fileSize < 0) {
+                continue;
+            }
+            out.writeInt(i);
+            out.writeLong(imageItem.metadata.fileSize);
+            out.writeLong(imageItem.metadata.fileLastModified);
+            imageItem.metadata.write(out, TAGS);
+        }
+        out.writeInt(-1);
+        out.flush();
+    }
+
+    static Map<Path, ImageMetadata> read(DataInputStream in, List<Path> files) throws IOException {
+        HashMap<Path, ImageMetadata> metadataMap = new HashMap<>();
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return metadataMap;
+        }
+        int index;
+        while ((index = in.readInt()) >= 0) {
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            ImageMetadata metadata = ImageMetadata.read(in, TAGS);
+            if (index >= files.size()) {
+                throw new IOException("invalid file index " + index);
+            }
+            metadata.fileSize = size;
+            metadata.fileLastModified = lastModified;
+            metadataMap.put(files.get(index), metadata);
+        }
+        return metadataMap;
+    }
+}
@@ -17,6 +17,14 @@ public class Prefs {
     public final BooleanProperty openLastProject;
     public final IntegerProperty minImageDisplaySize;
     public final IntegerProperty maxImageDisplaySize;
+    public final IntegerProperty metadataReaderCount;
+    public final IntegerProperty imageDecoderCount;
+    public final IntegerProperty copyWorkerCount;
+    public final IntegerProperty thumbnailCacheSize;
+    public final BooleanProperty useEmbeddedThumbnails;
+    public final IntegerProperty imageCacheSize;
+    public final IntegerProperty undoActionCount;
+    public final IntegerProperty undoMemorySize;
 
     public Prefs() {
         mainWindowBounds = new SimpleStringProperty();
@@ -26,6 +34,14 @@ public class Prefs {
         openLastProject = new SimpleBooleanProperty();
         minImageDisplaySize = new SimpleIntegerProperty();
         maxImageDisplaySize = new SimpleIntegerProperty();
+        metadataReaderCount = new SimpleIntegerProperty();
+        imageDecoderCount = new SimpleIntegerProperty();
+        copyWorkerCount = new SimpleIntegerProperty();
+        thumbnailCacheSize = new SimpleIntegerProperty();
+        useEmbeddedThumbnails = new SimpleBooleanProperty();
+        imageCacheSize = new SimpleIntegerProperty();
+        undoActionCount = new SimpleIntegerProperty();
+        undoMemorySize = new SimpleIntegerProperty();
         init();
     }
 
@@ -41,6 +57,14 @@ public class Prefs {
         openLastProject.set(OPEN_LAST_PROJECT);
         minImageDisplaySize.set(MIN_IMAGE_DISPLAY_SIZE);
         maxImageDisplaySize.set(MAX_IMAGE_DISPLAY_SIZE);
+        metadataReaderCount.set(METADATA_READER_COUNT);
+        imageDecoderCount.set(IMAGE_DECODER_COUNT);
+        copyWorkerCount.set(COPY_WORKER_COUNT);
+        thumbnailCacheSize.set(THUMBNAIL_CACHE_SIZE);
+        useEmbeddedThumbnails.set(USE_EMBEDDED_THUMBNAILS);
+        imageCacheSize.set(IMAGE_CACHE_SIZE);
+        undoActionCount.set(UNDO_ACTION_COUNT);
+        undoMemorySize.set(UNDO_MEMORY_SIZE);
     }
 
     public void setSettings(Preferences preferences) {
@@ -51,6 +75,14 @@ public class Prefs {
         openLastProject.set(preferences.getBoolean("openLastProject", openLastProject.get()));
         minImageDisplaySize.set(preferences.getInt("minImageDisplaySize", minImageDisplaySize.get()));
         maxImageDisplaySize.set(preferences.getInt("maxImageDisplaySize", maxImageDisplaySize.get()));
+        metadataReaderCount.set(preferences.getInt("metadataReaderCount", metadataReaderCount.get()));
+        imageDecoderCount.set(preferences.getInt("imageDecoderCount", imageDecoderCount.get()));
+        copyWorkerCount.set(preferences.getInt("copyWorkerCount", copyWorkerCount.get()));
+        thumbnailCacheSize.set(preferences.getInt("thumbnailCacheSize", thumbnailCacheSize.get()));
+        useEmbeddedThumbnails.set(preferences.getBoolean("useEmbeddedThumbnails", useEmbeddedThumbnails.get()));
+        imageCacheSize.set(preferences.getInt("imageCacheSize", imageCacheSize.get()));
+        undoActionCount.set(preferences.getInt("undoActionCount", undoActionCount.get()));
+        undoMemorySize.set(preferences.getInt("undoMemorySize", undoMemorySize.get()));
     }
 
     public void getSettings(Preferences preferences) {
@@ -61,6 +93,26 @@ public class Prefs {
         preferences.putBoolean("openLastProject", openLastProject.get());
         preferences.putInt("minImageDisplaySize", minImageDisplaySize.get());
         preferences.putInt("maxImageDisplaySize", maxImageDisplaySize.get());
+        preferences.putInt("metadataReaderCount", metadataReaderCount.get());
+        preferences.putInt("imageDecoderCount", imageDecoderCount.get());
+        preferences.putInt("copyWorkerCount", copyWorkerCount.get());
+        preferences.putInt("thumbnailCacheSize", thumbnailCacheSize.get());
+        preferences.putBoolean("useEmbeddedThumbnails", useEmbeddedThumbnails.get());
+        preferences.putInt("imageCacheSize", imageCacheSize.get());
+        preferences.putInt("undoActionCount", undoActionCount.get());
+        preferences.putInt("undoMemorySize", undoMemorySize.get());
+    }
+
+    public long getThumbnailCacheSizeInBytes() {
+        return thumbnailCacheSize.get() * 1024L * 1024L;
+    }
+
+    public long getImageCacheSizeInBytes() {
+        return imageCacheSize.get() * 1024L * 1024L;
+    }
+
+    public long getUndoMemorySizeInBytes() {
+        return undoMemorySize.get() * 1024L * 1024L;
     }
 
     public Rectangle getMainWindowBounds() {
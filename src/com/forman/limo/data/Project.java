@@ -1,7 +1,6 @@
 package com.forman.limo.data;
 
 import com.forman.limo.AppInfo;
-import com.sun.javafx.collections.ObservableListWrapper;
 import com.sun.javafx.collections.ObservableMapWrapper;
 import javafx.beans.InvalidationListener;
 import javafx.beans.property.*;
@@ -23,25 +22,34 @@ import static com.forman.limo.data.Defaults.*;
 
 public class Project {
 
-    private static final int VERSION = 1;
+    private static final int VERSION = 2;
     private static final String SETTINGS_PROPERTIES = "settings.properties";
+    // Version 1 only
     private static final String FILELIST_TXT = "filelist.txt";
+    private static final String FILELIST_BIN = "filelist.bin";
+    private static final String METADATA_BIN = "metadata.bin";
+    private static final String CONTENTHASH_BIN = "contenthash.bin";
 
     public final StringProperty projectFile;
 
     public final StringProperty targetDirName;
     public final StringProperty targetFileNamePattern;
     public final IntegerProperty targetFileStartIndex;
+    public final BooleanProperty targetIncremental;
+    public final BooleanProperty targetLinkFiles;
     public final BooleanProperty relativizePaths;
     public final StringProperty imageFilenameExt;
     public final BooleanProperty scanRecursive;
+    public final BooleanProperty skipIdenticalFiles;
     public final DoubleProperty imageDisplaySizeRatio;
     public final ListProperty<Path> selectedImageFiles;
     public final ListProperty<Path> imageFiles;
     public final MapProperty<Path, ImageItem> imageItems;
     private final List<Path> fileListImpl = new ArrayList<>();
+    private final ImageFileList fileList = new ImageFileList(fileListImpl);
     private final Map<Path, ImageItem> imageItemsImpl = new HashMap<>();
     public final BooleanProperty modified;
+    public final ContentHashIndex contentHashIndex = new ContentHashIndex();
 
     private final ArrayList<InvalidationListener> invalidationListeners = new ArrayList<>();
 
@@ -50,12 +58,15 @@ public class Project {
         targetDirName = new SimpleStringProperty();
         targetFileNamePattern = new SimpleStringProperty();
         targetFileStartIndex = new SimpleIntegerProperty();
+        targetIncremental = new SimpleBooleanProperty();
+        targetLinkFiles = new SimpleBooleanProperty();
         relativizePaths = new SimpleBooleanProperty();
         imageFilenameExt = new SimpleStringProperty();
         scanRecursive = new SimpleBooleanProperty();
+        skipIdenticalFiles = new SimpleBooleanProperty();
         imageDisplaySizeRatio = new SimpleDoubleProperty();
         selectedImageFiles = new SimpleListProperty<>(FXCollections.observableArrayList());
-        imageFiles = new SimpleListProperty<>(new ObservableListWrapper<>(fileListImpl));
+        imageFiles = new SimpleListProperty<>(fileList);
         imageItems = new SimpleMapProperty<>(new ObservableMapWrapper<>(imageItemsImpl));
         modified = new SimpleBooleanProperty();
 
@@ -64,9 +75,12 @@ public class Project {
         targetDirName.addListener(invalidationListener);
         targetFileNamePattern.addListener(invalidationListener);
         targetFileStartIndex.addListener(invalidationListener);
+        targetIncremental.addListener(invalidationListener);
+        targetLinkFiles.addListener(invalidationListener);
         relativizePaths.addListener(invalidationListener);
         imageFilenameExt.addListener(invalidationListener);
         scanRecursive.addListener(invalidationListener);
+        skipIdenticalFiles.addListener(invalidationListener);
         imageDisplaySizeRatio.addListener(invalidationListener);
         //selectedImageFiles.addListener(invalidationListener);
         imageFiles.addListener(invalidationListener);
@@ -79,6 +93,7 @@ public class Project {
         setDefaultSettings();
         imageItemsImpl.clear();
         imageFiles.clear();
+        contentHashIndex.clear();
         modified.set(false);
     }
 
@@ -86,9 +101,12 @@ public class Project {
         targetDirName.set(TARGET_DIR_NAME);
         targetFileNamePattern.set(TARGET_FILE_NAME_PATTERN);
         targetFileStartIndex.set(TARGET_FILE_START_INDEX);
+        targetIncremental.set(TARGET_INCREMENTAL);
+        targetLinkFiles.set(TARGET_LINK_FILES);
         relativizePaths.set(RELATIVIZE_PATHS);
         imageFilenameExt.set(IMAGE_FILE_NAME_EXT);
         scanRecursive.set(SCAN_RECURSIVE);
+        skipIdenticalFiles.set(SKIP_IDENTICAL_FILES);
         imageDisplaySizeRatio.set(IMAGE_DISPLAY_SIZE_RATIO);
         selectedImageFiles.clear();
     }
@@ -97,9 +115,12 @@ public class Project {
         targetDirName.set(preferences.get("targetDirName", targetDirName.get()));
         targetFileNamePattern.set(preferences.get("targetFileNamePattern", targetFileNamePattern.get()));
         targetFileStartIndex.set(preferences.getInt("targetFileStartIndex", targetFileStartIndex.get()));
+        targetIncremental.set(preferences.getBoolean("targetIncremental", targetIncremental.get()));
+        targetLinkFiles.set(preferences.getBoolean("targetLinkFiles", targetLinkFiles.get()));
         relativizePaths.set(preferences.getBoolean("relativizePaths", relativizePaths.get()));
         imageFilenameExt.set(preferences.get("imageFilenameExt", imageFilenameExt.get()));
         scanRecursive.set(preferences.getBoolean("scanRecursive", scanRecursive.get()));
+        skipIdenticalFiles.set(preferences.getBoolean("skipIdenticalFiles", skipIdenticalFiles.get()));
         imageDisplaySizeRatio.set(preferences.getDouble("imageDisplaySizeRatio", imageDisplaySizeRatio.get()));
     }
 
@@ -107,9 +128,12 @@ public class Project {
         preferences.put("targetDirName", targetDirName.get());
         preferences.put("targetFileNamePattern", targetFileNamePattern.get());
         preferences.putInt("targetFileStartIndex", targetFileStartIndex.get());
+        preferences.putBoolean("targetIncremental", targetIncremental.get());
+        preferences.putBoolean("targetLinkFiles", targetLinkFiles.get());
         preferences.putBoolean("relativizePaths", relativizePaths.get());
         preferences.put("imageFilenameExt", imageFilenameExt.get());
         preferences.putBoolean("scanRecursive", scanRecursive.get());
+        preferences.putBoolean("skipIdenticalFiles", skipIdenticalFiles.get());
         preferences.putDouble("imageDisplaySizeRatio", imageDisplaySizeRatio.get());
     }
 
@@ -135,6 +159,8 @@ public class Project {
         try (ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(normalizedFile.toFile()))) {
             storeSettings(zout);
             storeFileList(zout, projectDir);
+            storeMetadataIndex(zout);
+            storeContentHashIndex(zout);
         }
         this.projectFile.set(projectFile);
         modified.set(false);
@@ -161,9 +187,30 @@ public class Project {
     }
 
     private void loadFileList(ZipFile zipFile, Path projectDir) throws IOException {
+        List<Path> imageFiles;
+        ZipEntry entry = zipFile.getEntry(FILELIST_BIN);
+        if (entry != null) {
+            try (InputStream inputStream = new BufferedInputStream(zipFile.getInputStream(entry))) {
+                imageFiles = FileListFormat.read(inputStream, projectDir);
+            }
+        } else {
+            imageFiles = loadTextFileList(zipFile, projectDir);
+        }
+        Map<Path, ImageMetadata> metadataIndex = loadMetadataIndex(zipFile, imageFiles);
+        loadContentHashIndex(zipFile, imageFiles);
+        update(() -> {
+            this.imageItemsImpl.clear();
+            for (Path imageFile : imageFiles) {
+                this.imageItemsImpl.put(imageFile, new ImageItem(imageFile, null, metadataIndex.get(imageFile)));
+            }
+            this.imageFiles.clear();
+            this.imageFiles.addAll(imageFiles);
+        });
+    }
+
+    private List<Path> loadTextFileList(ZipFile zipFile, Path projectDir) throws IOException {
         ZipEntry entry = zipFile.getEntry(FILELIST_TXT);
         ArrayList<Path> imageFiles = new ArrayList<>();
-        HashMap<Path, ImageItem> imageItems = new HashMap<>();
         try (LineNumberReader reader = new LineNumberReader(new InputStreamReader(zipFile.getInputStream(entry)))) {
             String line;
             while ((line = reader.readLine()) != null) {
@@ -172,26 +219,60 @@ public class Project {
                     Path imageFile = projectDir.resolve(Paths.get(line));
                     // System.out.println("loadedImageFile = " + loadedImageFile);
                     imageFiles.add(imageFile);
-                    imageItems.put(imageFile, ImageItem.newEmpty(imageFile));
                 }
             }
         }
-        this.imageItemsImpl.clear();
-        this.imageItemsImpl.putAll(imageItems);
-        this.imageFiles.clear();
-        this.imageFiles.addAll(imageFiles);
+        return imageFiles;
     }
 
     private void storeFileList(ZipOutputStream zout, Path projectDir) throws IOException {
-        ZipEntry entry = new ZipEntry(FILELIST_TXT);
+        ZipEntry entry = new ZipEntry(FILELIST_BIN);
+        zout.putNextEntry(entry);
+        FileListFormat.write(zout, imageFiles, projectDir, relativizePaths.get());
+        zout.closeEntry();
+    }
+
+    // The index is a cache only, albums without or with an unreadable index are opened anyway
+    private Map<Path, ImageMetadata> loadMetadataIndex(ZipFile zipFile, List<Path> imageFiles) {
+        ZipEntry entry = zipFile.getEntry(METADATA_BIN);
+        if (entry != null) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(zipFile.getInputStream(entry)))) {
+                return MetadataIndex.read(in, imageFiles);
+            } catch (IOException e) {
+                if (AppInfo.DEBUG) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return Collections.emptyMap();
+    }
+
+    private void storeMetadataIndex(ZipOutputStream zout) throws IOException {
+        ZipEntry entry = new ZipEntry(METADATA_BIN);
         zout.putNextEntry(entry);
-        PrintWriter writer = new PrintWriter(new OutputStreamWriter(zout));
-        for (Path imageFile : imageFiles) {
-            Path storedImageFile = relativizePaths.get() ? projectDir.relativize(imageFile) : imageFile;
-            // System.out.println("storedImageFile = " + storedImageFile);
-            writer.println(storedImageFile);
+        MetadataIndex.write(new DataOutputStream(new BufferedOutputStream(zout)), imageFiles, imageItemsImpl);
+        zout.closeEntry();
+    }
+
+    // Like the metadata index, the content hash index is a cache only
+    private void loadContentHashIndex(ZipFile zipFile, List<Path> imageFiles) {
+        ZipEntry entry = zipFile.getEntry(CONTENTHASH_BIN);
+        if (entry != null) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(zipFile.getInputStream(entry)))) {
+                contentHashIndex.read(in, imageFiles);
+            } catch (IOException e) {
+                contentHashIndex.clear();
+                if (AppInfo.DEBUG) {
+                    e.printStackTrace();
+                }
+            }
         }
-        writer.flush();
+    }
+
+    private void storeContentHashIndex(ZipOutputStream zout) throws IOException {
+        ZipEntry entry = new ZipEntry(CONTENTHASH_BIN);
+        zout.putNextEntry(entry);
+        contentHashIndex.write(new DataOutputStream(new BufferedOutputStream(zout)), imageFiles);
         zout.closeEntry();
     }
 
@@ -204,12 +285,43 @@ public class Project {
         if (!imageItemsImpl.containsKey(path)) {
             imageItemsImpl.put(path, ImageItem.newEmpty(path));
             imageFiles.add(path); // notifies UI
+        } else if (fileList.getIndex(path) < 0) {
+            imageFiles.add(path);
         }
     }
 
-    public void addFiles(List<Path> files) {
+    // Returns the files that were not yet part of the album. Image items of files removed
+    // from the album, e.g. by undo, are kept and reused.
+    public List<Path> addFiles(List<Path> files) {
+        ArrayList<Path> newFiles = new ArrayList<>(files.size());
+        HashSet<Path> newFileSet = new HashSet<>();
         for (Path file : files) {
-            addFile(file);
+            Path path = file.toAbsolutePath().normalize();
+            if (newFileSet.contains(path)) {
+                continue;
+            }
+            if (!imageItemsImpl.containsKey(path)) {
+                imageItemsImpl.put(path, ImageItem.newEmpty(path));
+            } else if (fileList.getIndex(path) >= 0) {
+                continue;
+            }
+            newFileSet.add(path);
+            newFiles.add(path);
+        }
+        if (!newFiles.isEmpty()) {
+            imageFiles.addAll(newFiles); // notifies UI
+        }
+        return newFiles;
+    }
+
+    // Runs the given modifications of imageFiles and notifies listeners once with a single change.
+    // New image items are always put silently, listeners pick them up from the list change.
+    public void update(Runnable modification) {
+        fileList.beginBatch();
+        try {
+            modification.run();
+        } finally {
+            fileList.endBatch();
         }
     }
 
@@ -251,7 +363,7 @@ public class Project {
 
     public int getSelectedImageIndex() {
         if (selectedImageFiles.size() > 0) {
-            return fileListImpl.indexOf(selectedImageFiles.get(0));
+            return getImageFileIndex(selectedImageFiles.get(0));
         }
         return -1;
     }
@@ -260,13 +372,23 @@ public class Project {
         return imageItemsImpl.get(file);
     }
 
-    public Map<Path, Integer> getImageFileIndexes() {
-        Map<Path, Integer> indexes = new HashMap<>();
-        for (int i = 0; i < imageFiles.size(); i++) {
-            Path file = imageFiles.get(i);
-            indexes.put(file, i);
-        }
-        return indexes;
+    // Moves the files at the given ascending indexes up (offset < 0) or down (offset > 0), preserving their distances
+    public void moveImageFiles(int[] indexes, int offset) {
+        fileList.move(indexes, offset);
+    }
+
+    // Inserts the files at the given ascending indexes of the resulting list
+    public void insertImageFiles(int[] indexes, List<Path> files) {
+        fileList.insert(indexes, files);
+    }
+
+    // The image file at new index i will be the one at old index order[i]
+    public void reorderImageFiles(int[] order) {
+        fileList.reorder(order);
+    }
+
+    public int getImageFileIndex(Path file) {
+        return fileList.getIndex(file);
     }
 
     public List<Integer> getSelectedImageFileIndexes() {
@@ -278,13 +400,12 @@ public class Project {
             return Collections.emptyList();
         }
         if (files.size() == 1) {
-            return Collections.singletonList(imageFiles.indexOf(files.get(0)));
+            return Collections.singletonList(getImageFileIndex(files.get(0)));
         }
-        Map<Path, Integer> pathIndexes = getImageFileIndexes();
-        ArrayList<Integer> indexes = new ArrayList<>();
+        ArrayList<Integer> indexes = new ArrayList<>(files.size());
         for (Path file : files) {
-            Integer index = pathIndexes.get(file);
-            if (index != null) {
+            int index = getImageFileIndex(file);
+            if (index >= 0) {
                 indexes.add(index);
             }
         }
@@ -28,6 +28,7 @@ package com.forman.limo.dialogs;
 import com.forman.limo.AppInfo;
 import com.forman.limo.CopyAndRenameImagesService;
 import com.forman.limo.StringReplacer;
+import com.forman.limo.data.Prefs;
 import com.forman.limo.data.Project;
 import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
@@ -47,7 +48,7 @@ import java.util.Optional;
 public class CopyAndRenameDialog {
 
 
-    public static void show(Stage window, Project project) {
+    public static void show(Stage window, Project project, Prefs preferences) {
         final Path projectDir;
         if (project.projectFile.get() != null) {
             Path projectFile = Paths.get(project.projectFile.get());
@@ -66,6 +67,11 @@ public class CopyAndRenameDialog {
         TextField targetStartIndexTextField = new TextField();
         targetStartIndexTextField.setPrefColumnCount(8);
         targetStartIndexTextField.setText(project.targetFileStartIndex.get() + "");
+        CheckBox incrementalCheckBox = new CheckBox(AppInfo.RES.getString("only.copy.changed.files"));
+        incrementalCheckBox.setSelected(project.targetIncremental.get());
+        CheckBox linkFilesCheckBox = new CheckBox(AppInfo.RES.getString("link.files.instead.of.copying"));
+        linkFilesCheckBox.setSelected(project.targetLinkFiles.get());
+        linkFilesCheckBox.setTooltip(new Tooltip(AppInfo.RES.getString("tooltip.link.files")));
 
         BorderPane imageTargetDirectoryPane = new BorderPane();
         imageTargetDirectoryPane.setCenter(targetDirectoryTextField);
@@ -85,6 +91,8 @@ public class CopyAndRenameDialog {
         settingsPane.add(targetFileNamePatternTextField, 1, 2);
         settingsPane.add(indexLabel, 0, 3);
         settingsPane.add(targetStartIndexTextField, 1, 3);
+        settingsPane.add(incrementalCheckBox, 0, 4);
+        settingsPane.add(linkFilesCheckBox, 0, 5);
 
         Tooltip tooltip = new Tooltip(AppInfo.RES.getString("tooltip.pattern.formats"));
         patternLabel.setTooltip(tooltip);
@@ -92,14 +100,19 @@ public class CopyAndRenameDialog {
 
         GridPane.setColumnSpan(imageTargetDirectoryLabel, 2);
         GridPane.setColumnSpan(imageTargetDirectoryPane, 2);
+        GridPane.setColumnSpan(incrementalCheckBox, 2);
+        GridPane.setColumnSpan(linkFilesCheckBox, 2);
 
         ProgressBar progressBar = new ProgressBar(0);
         progressBar.setDisable(true);
         progressBar.setPrefWidth(400);
 
+        Label progressLabel = new Label();
+
         BorderPane progressPane = new BorderPane();
         progressPane.setPadding(new Insets(10, 0, 0, 0));
         progressPane.setCenter(progressBar);
+        progressPane.setBottom(progressLabel);
 
         BorderPane content = new BorderPane();
         content.setPadding(new Insets(10));
@@ -130,7 +143,7 @@ public class CopyAndRenameDialog {
             targetFileNamePatternText = targetFileNamePatternText != null ? targetFileNamePatternText.trim() : "";
             if (!targetFileNamePatternText.isEmpty()) {
                 Map<String, String> replacements = CopyAndRenameImagesService.getReplacements("XYZ", "PNG", null);
-                String replacedString = StringReplacer.replace(targetFileNamePatternText, 171819, replacements);
+                String replacedString = StringReplacer.compile(targetFileNamePatternText).render(171819, replacements);
                 if (replacedString.contains("{") && replacedString.contains("}")) {
                     error(MessageFormat.format(AppInfo.RES.getString("invalid.filename.pattern.0"), targetFileNamePatternText));
                     return;
@@ -153,9 +166,17 @@ public class CopyAndRenameDialog {
                 return;
             }
 
+            // Updating a previous export only overwrites files that it has written itself
+            boolean update = incrementalCheckBox.isSelected() && CopyAndRenameImagesService.isExportDirectory(targetDir);
             if (targetDir.toFile().isDirectory()) {
-                File[] list = targetDir.toFile().listFiles(File::isFile);
-                if (list != null && list.length > 0) {
+                boolean overwrites;
+                if (update) {
+                    overwrites = CopyAndRenameImagesService.overwritesOtherFiles(project.imageFiles, targetDir, targetFileNamePatternText, startIndex);
+                } else {
+                    File[] list = targetDir.toFile().listFiles(File::isFile);
+                    overwrites = list != null && list.length > 0;
+                }
+                if (overwrites) {
                     Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
                     alert.setTitle(AppInfo.getWindowTitle(AppInfo.RES.getString("copy.and.rename")));
                     alert.setHeaderText(AppInfo.RES.getString("target.directory.already.contains.files"));
@@ -173,6 +194,8 @@ public class CopyAndRenameDialog {
             project.targetDirName.set(targetDir.toString());
             project.targetFileNamePattern.set(targetFileNamePatternText);
             project.targetFileStartIndex.set(startIndex);
+            project.targetIncremental.set(incrementalCheckBox.isSelected());
+            project.targetLinkFiles.set(linkFilesCheckBox.isSelected());
 
             content.setDisable(true);
             applyButton.setDisable(true);
@@ -183,10 +206,15 @@ public class CopyAndRenameDialog {
             copyAndRenameImagesService.setDirectory(targetDir);
             copyAndRenameImagesService.setPattern(project.targetFileNamePattern.get());
             copyAndRenameImagesService.setStartIndex(project.targetFileStartIndex.get());
+            copyAndRenameImagesService.setWorkerCount(preferences.copyWorkerCount.get());
+            copyAndRenameImagesService.setIncremental(project.targetIncremental.get());
+            copyAndRenameImagesService.setLinkFiles(project.targetLinkFiles.get());
             copyAndRenameImagesService.setOnSucceeded(event1 -> dialog.close());
             copyAndRenameImagesService.setOnCancelled(event1 -> dialog.close());
             copyAndRenameImagesService.setOnFailed(event1 -> dialog.close());
             progressBar.progressProperty().bind(copyAndRenameImagesService.progressProperty());
+            progressLabel.textProperty().bind(copyAndRenameImagesService.messageProperty());
+            dialog.setOnHidden(event1 -> copyAndRenameImagesService.cancel());
             copyAndRenameImagesService.start();
         });
 
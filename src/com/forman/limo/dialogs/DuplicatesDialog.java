@@ -0,0 +1,57 @@
+package com.forman.limo.dialogs;
+
+import com.forman.limo.AppInfo;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextArea;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
+import javafx.stage.Stage;
+
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.List;
+
+public class DuplicatesDialog {
+    public static void show(Stage window, List<List<Path>> groups, int selectedCount) {
+        Alert dialog = new Alert(Alert.AlertType.INFORMATION);
+        dialog.initOwner(window);
+        dialog.setTitle(AppInfo.getWindowTitle(AppInfo.RES.getString("find.duplicates")));
+        if (groups.isEmpty()) {
+            dialog.setHeaderText(AppInfo.RES.getString("no.duplicates.found"));
+            dialog.showAndWait();
+            return;
+        }
+
+        StringBuilder groupsText = new StringBuilder();
+        for (List<Path> group : groups) {
+            if (groupsText.length() > 0) {
+                groupsText.append('\n');
+            }
+            for (Path file : group) {
+                groupsText.append(file).append('\n');
+            }
+        }
+
+        Label label = new Label(AppInfo.RES.getString("the.duplicate.groups.are"));
+
+        TextArea textArea = new TextArea(groupsText.toString());
+        textArea.setEditable(false);
+        textArea.setWrapText(false);
+
+        textArea.setMaxWidth(Double.MAX_VALUE);
+        textArea.setMaxHeight(Double.MAX_VALUE);
+        GridPane.setVgrow(textArea, Priority.ALWAYS);
+        GridPane.setHgrow(textArea, Priority.ALWAYS);
+
+        GridPane expContent = new GridPane();
+        expContent.setMaxWidth(Double.MAX_VALUE);
+        expContent.add(label, 0, 0);
+        expContent.add(textArea, 0, 1);
+
+        dialog.setHeaderText(MessageFormat.format(AppInfo.RES.getString("0.groups.of.duplicates.found"), groups.size()));
+        dialog.setContentText(MessageFormat.format(AppInfo.RES.getString("0.duplicates.have.been.selected"), selectedCount));
+        dialog.getDialogPane().setExpandableContent(expContent);
+        dialog.showAndWait();
+    }
+}
@@ -1,6 +1,7 @@
 package com.forman.limo.dialogs;
 
 import com.forman.limo.AppInfo;
+import com.forman.limo.data.ImageMetadata;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
@@ -15,7 +16,6 @@ import javafx.stage.StageStyle;
 
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Map;
 
 public class MetadataWindow extends Stage {
 
@@ -93,23 +93,12 @@ public class MetadataWindow extends Stage {
         setScene(new Scene(table, catNameColSize + tagNameColSize + tagValueColSize + 20, 420));
     }
 
-    public void setItems(Map<String, Map<String, String>> data) {
-        ArrayList<Item> itemList = new ArrayList<>();
-        for (String catName : data.keySet()) {
-            Map<String, String> catData = data.get(catName);
-            for (String tagName : catData.keySet()) {
-                Item item = new Item(catName, tagName, catData.get(tagName));
-                System.out.println("item = " + item);
-                itemList.add(item);
-            }
+    public void setItems(ImageMetadata metadata) {
+        // Entries are already sorted by category and tag
+        ArrayList<Item> itemList = new ArrayList<>(metadata.size());
+        for (int i = 0; i < metadata.size(); i++) {
+            itemList.add(new Item(metadata.getDirectoryName(i), metadata.getTagName(i), metadata.getDisplayValue(i)));
         }
-        itemList.sort((o1, o2) -> {
-            int d = o1.getCatName().compareTo(o2.getCatName());
-            if (d != 0) {
-                return d;
-            }
-            return o1.getTagName().compareTo(o2.getTagName());
-        });
         items.setAll(itemList);
     }
 
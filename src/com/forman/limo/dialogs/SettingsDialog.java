@@ -42,6 +42,15 @@ public class SettingsDialog {
 
     public static final int MIN_DISPLAY_SIZE = 16;
     public static final int MAX_DISPLAY_SIZE = 512;
+    public static final int MIN_THREAD_COUNT = 1;
+    public static final int MAX_THREAD_COUNT = 64;
+    public static final int MAX_THUMBNAIL_CACHE_SIZE = 1024 * 1024;
+    public static final int MIN_IMAGE_CACHE_SIZE = 16;
+    public static final int MAX_IMAGE_CACHE_SIZE = 64 * 1024;
+    public static final int MIN_UNDO_ACTION_COUNT = 1;
+    public static final int MAX_UNDO_ACTION_COUNT = 100000;
+    public static final int MIN_UNDO_MEMORY_SIZE = 1;
+    public static final int MAX_UNDO_MEMORY_SIZE = 64 * 1024;
 
     public static void show(Stage window, Project project, Prefs preferences) {
 
@@ -53,6 +62,9 @@ public class SettingsDialog {
         CheckBox scanRecursiveCheckBox = new CheckBox(AppInfo.RES.getString("also.scan.subdirectories"));
         scanRecursiveCheckBox.setSelected(project.scanRecursive.get());
 
+        CheckBox skipIdenticalFilesCheckBox = new CheckBox(AppInfo.RES.getString("skip.files.identical.to.album.files"));
+        skipIdenticalFilesCheckBox.setSelected(project.skipIdenticalFiles.get());
+
         CheckBox relativizePathsCheckBox = new CheckBox(AppInfo.RES.getString("store.image.file.paths.relative.to.project"));
         relativizePathsCheckBox.setSelected(project.relativizePaths.get());
 
@@ -64,9 +76,11 @@ public class SettingsDialog {
         projectPanel.add(new Label(AppInfo.RES.getString("image.file.extensions")), 0, 0);
         projectPanel.add(imageFilenameExtTextField, 1, 0);
         projectPanel.add(scanRecursiveCheckBox, 0, 1);
-        projectPanel.add(relativizePathsCheckBox, 0, 2);
+        projectPanel.add(skipIdenticalFilesCheckBox, 0, 2);
+        projectPanel.add(relativizePathsCheckBox, 0, 3);
 
         GridPane.setColumnSpan(scanRecursiveCheckBox, 2);
+        GridPane.setColumnSpan(skipIdenticalFilesCheckBox, 2);
         GridPane.setColumnSpan(relativizePathsCheckBox, 2);
 
         // Prefs
@@ -74,10 +88,27 @@ public class SettingsDialog {
         CheckBox openLastProjectCheckBox = new CheckBox(AppInfo.RES.getString("reopen.last.project.on.startup"));
         openLastProjectCheckBox.setSelected(preferences.openLastProject.get());
 
+        CheckBox useEmbeddedThumbnailsCheckBox = new CheckBox(AppInfo.RES.getString("show.embedded.thumbnails.first"));
+        useEmbeddedThumbnailsCheckBox.setSelected(preferences.useEmbeddedThumbnails.get());
+
         TextField minImageDisplaySizeTextField = new TextField(preferences.minImageDisplaySize.get() + "");
         minImageDisplaySizeTextField.setPrefColumnCount(6);
         TextField maxImageDisplaySizeTextField = new TextField(preferences.maxImageDisplaySize.get() + "");
         maxImageDisplaySizeTextField.setPrefColumnCount(6);
+        TextField metadataReaderCountTextField = new TextField(preferences.metadataReaderCount.get() + "");
+        metadataReaderCountTextField.setPrefColumnCount(6);
+        TextField imageDecoderCountTextField = new TextField(preferences.imageDecoderCount.get() + "");
+        imageDecoderCountTextField.setPrefColumnCount(6);
+        TextField copyWorkerCountTextField = new TextField(preferences.copyWorkerCount.get() + "");
+        copyWorkerCountTextField.setPrefColumnCount(6);
+        TextField thumbnailCacheSizeTextField = new TextField(preferences.thumbnailCacheSize.get() + "");
+        thumbnailCacheSizeTextField.setPrefColumnCount(6);
+        TextField imageCacheSizeTextField = new TextField(preferences.imageCacheSize.get() + "");
+        imageCacheSizeTextField.setPrefColumnCount(6);
+        TextField undoActionCountTextField = new TextField(preferences.undoActionCount.get() + "");
+        undoActionCountTextField.setPrefColumnCount(6);
+        TextField undoMemorySizeTextField = new TextField(preferences.undoMemorySize.get() + "");
+        undoMemorySizeTextField.setPrefColumnCount(6);
 
         GridPane preferencesPanel = new GridPane();
         preferencesPanel.setPadding(new Insets(10));
@@ -89,10 +120,33 @@ public class SettingsDialog {
         preferencesPanel.add(minImageDisplaySizeTextField, 1, 1);
         preferencesPanel.add(new Label(AppInfo.RES.getString("maximum.image.size")), 0, 2);
         preferencesPanel.add(maxImageDisplaySizeTextField, 1, 2);
+        preferencesPanel.add(new Label(AppInfo.RES.getString("metadata.reader.threads")), 0, 3);
+        preferencesPanel.add(metadataReaderCountTextField, 1, 3);
+        preferencesPanel.add(new Label(AppInfo.RES.getString("image.decoder.threads")), 0, 4);
+        preferencesPanel.add(imageDecoderCountTextField, 1, 4);
+        preferencesPanel.add(new Label(AppInfo.RES.getString("copy.threads")), 0, 5);
+        preferencesPanel.add(copyWorkerCountTextField, 1, 5);
+        preferencesPanel.add(new Label(AppInfo.RES.getString("thumbnail.cache.size.mb")), 0, 6);
+        preferencesPanel.add(thumbnailCacheSizeTextField, 1, 6);
+        preferencesPanel.add(new Label(AppInfo.RES.getString("image.cache.size.mb")), 0, 7);
+        preferencesPanel.add(imageCacheSizeTextField, 1, 7);
+        preferencesPanel.add(useEmbeddedThumbnailsCheckBox, 0, 8);
+        preferencesPanel.add(new Label(AppInfo.RES.getString("undo.steps")), 0, 9);
+        preferencesPanel.add(undoActionCountTextField, 1, 9);
+        preferencesPanel.add(new Label(AppInfo.RES.getString("undo.memory.size.mb")), 0, 10);
+        preferencesPanel.add(undoMemorySizeTextField, 1, 10);
 
         GridPane.setColumnSpan(openLastProjectCheckBox, 2);
+        GridPane.setColumnSpan(useEmbeddedThumbnailsCheckBox, 2);
         GridPane.setHalignment(minImageDisplaySizeTextField, HPos.RIGHT);
         GridPane.setHalignment(maxImageDisplaySizeTextField, HPos.RIGHT);
+        GridPane.setHalignment(metadataReaderCountTextField, HPos.RIGHT);
+        GridPane.setHalignment(imageDecoderCountTextField, HPos.RIGHT);
+        GridPane.setHalignment(copyWorkerCountTextField, HPos.RIGHT);
+        GridPane.setHalignment(thumbnailCacheSizeTextField, HPos.RIGHT);
+        GridPane.setHalignment(imageCacheSizeTextField, HPos.RIGHT);
+        GridPane.setHalignment(undoActionCountTextField, HPos.RIGHT);
+        GridPane.setHalignment(undoMemorySizeTextField, HPos.RIGHT);
 
         Tab projectTab = new Tab();
         projectTab.setText(AppInfo.RES.getString("project"));
@@ -169,10 +223,77 @@ public class SettingsDialog {
                 return;
             }
 
+            int metadataReaderCount = parseThreadCount(metadataReaderCountTextField.getText());
+            int imageDecoderCount = parseThreadCount(imageDecoderCountTextField.getText());
+            int copyWorkerCount = parseThreadCount(copyWorkerCountTextField.getText());
+            if (metadataReaderCount < 0 || imageDecoderCount < 0 || copyWorkerCount < 0) {
+                error(MessageFormat.format(AppInfo.RES.getString("thread.count.must.be.0.and.1"),
+                        MIN_THREAD_COUNT, MAX_THREAD_COUNT));
+                event.consume();
+                return;
+            }
+
+            String thumbnailCacheSizeText = thumbnailCacheSizeTextField.getText();
+            int thumbnailCacheSize;
+            try {
+                thumbnailCacheSize = Integer.parseInt(thumbnailCacheSizeText.trim());
+            } catch (NumberFormatException e) {
+                thumbnailCacheSize = -1;
+            }
+            if (thumbnailCacheSize < 0 || thumbnailCacheSize > MAX_THUMBNAIL_CACHE_SIZE) {
+                error(MessageFormat.format(AppInfo.RES.getString("thumbnail.cache.size.must.be.0.and.1"),
+                        0, MAX_THUMBNAIL_CACHE_SIZE));
+                event.consume();
+                return;
+            }
+
+            String imageCacheSizeText = imageCacheSizeTextField.getText();
+            int imageCacheSize;
+            try {
+                imageCacheSize = Integer.parseInt(imageCacheSizeText.trim());
+            } catch (NumberFormatException e) {
+                imageCacheSize = -1;
+            }
+            if (imageCacheSize < MIN_IMAGE_CACHE_SIZE || imageCacheSize > MAX_IMAGE_CACHE_SIZE) {
+                error(MessageFormat.format(AppInfo.RES.getString("image.cache.size.must.be.0.and.1"),
+                        MIN_IMAGE_CACHE_SIZE, MAX_IMAGE_CACHE_SIZE));
+                event.consume();
+                return;
+            }
+
+            String undoActionCountText = undoActionCountTextField.getText();
+            int undoActionCount;
+            try {
+                undoActionCount = Integer.parseInt(undoActionCountText.trim());
+            } catch (NumberFormatException e) {
+                undoActionCount = -1;
+            }
+            if (undoActionCount < MIN_UNDO_ACTION_COUNT || undoActionCount > MAX_UNDO_ACTION_COUNT) {
+                error(MessageFormat.format(AppInfo.RES.getString("undo.steps.must.be.0.and.1"),
+                        MIN_UNDO_ACTION_COUNT, MAX_UNDO_ACTION_COUNT));
+                event.consume();
+                return;
+            }
+
+            String undoMemorySizeText = undoMemorySizeTextField.getText();
+            int undoMemorySize;
+            try {
+                undoMemorySize = Integer.parseInt(undoMemorySizeText.trim());
+            } catch (NumberFormatException e) {
+                undoMemorySize = -1;
+            }
+            if (undoMemorySize < MIN_UNDO_MEMORY_SIZE || undoMemorySize > MAX_UNDO_MEMORY_SIZE) {
+                error(MessageFormat.format(AppInfo.RES.getString("undo.memory.size.must.be.0.and.1"),
+                        MIN_UNDO_MEMORY_SIZE, MAX_UNDO_MEMORY_SIZE));
+                event.consume();
+                return;
+            }
+
             ////////////////////////////////////////////////
             // Apply Project
             project.imageFilenameExt.set(imageFileNameExtText);
             project.scanRecursive.set(scanRecursiveCheckBox.isSelected());
+            project.skipIdenticalFiles.set(skipIdenticalFilesCheckBox.isSelected());
             project.relativizePaths.set(relativizePathsCheckBox.isSelected());
 
             ////////////////////////////////////////////////
@@ -180,10 +301,28 @@ public class SettingsDialog {
             preferences.openLastProject.set(openLastProjectCheckBox.isSelected());
             preferences.minImageDisplaySize.set(minImageDisplaySize);
             preferences.maxImageDisplaySize.set(maxImageDisplaySize);
+            preferences.metadataReaderCount.set(metadataReaderCount);
+            preferences.imageDecoderCount.set(imageDecoderCount);
+            preferences.copyWorkerCount.set(copyWorkerCount);
+            preferences.thumbnailCacheSize.set(thumbnailCacheSize);
+            preferences.useEmbeddedThumbnails.set(useEmbeddedThumbnailsCheckBox.isSelected());
+            preferences.imageCacheSize.set(imageCacheSize);
+            preferences.undoActionCount.set(undoActionCount);
+            preferences.undoMemorySize.set(undoMemorySize);
         });
         dialog.show();
     }
 
+    private static int parseThreadCount(String text) {
+        int threadCount;
+        try {
+            threadCount = Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        return threadCount >= MIN_THREAD_COUNT && threadCount <= MAX_THREAD_COUNT ? threadCount : -1;
+    }
+
     static void error(String message) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle(AppInfo.getWindowTitle(AppInfo.RES.getString("settings1")));
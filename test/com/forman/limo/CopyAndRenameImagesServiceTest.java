@@ -0,0 +1,39 @@
+package com.forman.limo;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class CopyAndRenameImagesServiceTest {
+    @Test
+    public void testOverwritesOtherFiles() throws Exception {
+        Path sourceDir = Files.createTempDirectory("limo-src");
+        Path targetDir = Files.createTempDirectory("limo-dst");
+        Path sourceFile1 = Files.write(sourceDir.resolve("P8080034.jpg"), new byte[1000]);
+        Path sourceFile2 = Files.write(sourceDir.resolve("P8080035.jpg"), new byte[2000]);
+        List<Path> files = Arrays.asList(sourceFile1, sourceFile2);
+        assertFalse(CopyAndRenameImagesService.overwritesOtherFiles(files, targetDir, "IMAG_{0N}", 1));
+
+        // Exported before
+        Path targetFile1 = Files.copy(sourceFile1, targetDir.resolve("IMAG_01.jpg"));
+        ExportManifest manifest = new ExportManifest(targetDir);
+        manifest.put("IMAG_01.jpg", ExportManifest.createEntry(sourceFile1, targetFile1));
+        manifest.save();
+        assertFalse(CopyAndRenameImagesService.overwritesOtherFiles(files, targetDir, "IMAG_{0N}", 1));
+
+        // Not at a target name
+        Files.write(targetDir.resolve("notes.txt"), new byte[10]);
+        assertFalse(CopyAndRenameImagesService.overwritesOtherFiles(files, targetDir, "IMAG_{0N}", 1));
+
+        // Not exported
+        Files.write(targetDir.resolve("IMAG_02.jpg"), new byte[10]);
+        assertTrue(CopyAndRenameImagesService.overwritesOtherFiles(files, targetDir, "IMAG_{0N}", 1));
+        assertFalse(CopyAndRenameImagesService.overwritesOtherFiles(files, targetDir, "IMAG_{0N}", 3));
+    }
+}
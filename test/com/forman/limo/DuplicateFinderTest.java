@@ -0,0 +1,108 @@
+package com.forman.limo;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class DuplicateFinderTest {
+    @Test
+    public void testDHash() throws Exception {
+        // Same picture at different sizes and with some noise
+        long hash1 = PerceptualHash.dHash(900, 600, (x, y) -> getArgb(x / 900.0, y / 600.0, 0));
+        long hash2 = PerceptualHash.dHash(160, 120, (x, y) -> getArgb(x / 160.0, y / 120.0, 0));
+        long hash3 = PerceptualHash.dHash(900, 600, (x, y) -> getArgb(x / 900.0, y / 600.0, (x * 31 + y * 17) % 7));
+        long hash4 = PerceptualHash.dHash(900, 600, (x, y) -> getArgb(y / 600.0, x / 900.0, 0));
+        assertTrue(PerceptualHash.distance(hash1, hash2) <= DuplicateFinderTask.MAX_DISTANCE);
+        assertTrue(PerceptualHash.distance(hash1, hash3) <= DuplicateFinderTask.MAX_DISTANCE);
+        assertTrue(PerceptualHash.distance(hash1, hash4) > DuplicateFinderTask.MAX_DISTANCE);
+    }
+
+    @Test
+    public void testDHashOfLetterboxedThumbnail() throws Exception {
+        // A 16:9 picture decoded from the file and as a 160 x 120 Exif thumbnail with black bars
+        long hash1 = PerceptualHash.dHash(1600, 900, (x, y) -> getArgb(x / 1600.0, y / 900.0, 0, true));
+        long hash2 = PerceptualHash.dHash(160, 120, (x, y) -> {
+            if (y < 15 || y >= 105) {
+                return 0xFF000000 | ((x + y) % 3) * 0x010101;
+            }
+            return getArgb(x / 160.0, (y - 15) / 90.0, 0, true);
+        });
+        assertTrue(PerceptualHash.distance(hash1, hash2) <= DuplicateFinderTask.MAX_DISTANCE);
+    }
+
+    @Test
+    public void testMultiIndexHashTableQuery() throws Exception {
+        Random random = new Random(4711);
+        long[] hashes = new long[2000];
+        boolean[] hashed = new boolean[hashes.length];
+        for (int i = 0; i < hashes.length; i++) {
+            // Some equal and some similar hashes
+            hashes[i] = i % 10 == 0 ? hashes[i / 2] : i % 10 == 1 ? hashes[i - 1] ^ (1L << random.nextInt(64)) : random.nextLong();
+            hashed[i] = i % 7 != 0;
+        }
+        for (int maxDistance : new int[]{0, 3, 12}) {
+            MultiIndexHashTable hashTable = new MultiIndexHashTable(hashes, hashed, maxDistance);
+            for (int i = 0; i < 100; i++) {
+                long hash = hashes[random.nextInt(hashes.length)] ^ random.nextLong() & random.nextLong() & random.nextLong();
+                List<Integer> expected = new ArrayList<>();
+                for (int j = 0; j < hashes.length; j++) {
+                    if (hashed[j] && PerceptualHash.distance(hash, hashes[j]) <= maxDistance) {
+                        expected.add(j);
+                    }
+                }
+                List<Integer> actual = new ArrayList<>();
+                hashTable.query(hash, actual::add);
+                Collections.sort(actual);
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testFindGroups() throws Exception {
+        List<Path> files = Arrays.asList(Paths.get("a.jpg"), Paths.get("b.jpg"), Paths.get("c.jpg"),
+                Paths.get("d.jpg"), Paths.get("e.jpg"), Paths.get("f.jpg"));
+        long[] hashes = {
+                0x0F0F0F0F0F0F0F0FL,
+                0x123456789ABCDEF0L,
+                0x0F0F0F0F0F0F0F0FL,
+                0x123456789ABCDEF7L,
+                0x7F7F0F0F0F0F0F0FL,
+                0x0F0F0F0F0F0F0F0FL,
+        };
+        boolean[] hashed = {true, true, true, true, true, false};
+        List<List<Path>> groups = DuplicateFinderTask.findGroups(files, hashes, hashed, 3);
+        assertEquals(2, groups.size());
+        assertEquals(Arrays.asList(Paths.get("a.jpg"), Paths.get("c.jpg")), groups.get(0));
+        assertEquals(Arrays.asList(Paths.get("b.jpg"), Paths.get("d.jpg")), groups.get(1));
+
+        // Similar through c.jpg
+        hashes[2] = 0x1F3F0F0F0F0F0F0FL;
+        groups = DuplicateFinderTask.findGroups(files, hashes, hashed, 3);
+        assertEquals(2, groups.size());
+        assertEquals(Arrays.asList(Paths.get("a.jpg"), Paths.get("c.jpg"), Paths.get("e.jpg")), groups.get(0));
+    }
+
+    private static int getArgb(double x, double y, int noise) {
+        return getArgb(x, y, noise, false);
+    }
+
+    // A diagonal gradient with a bright disc, optionally mirrored in the upper half
+    private static int getArgb(double x, double y, int noise, boolean mirrored) {
+        double dx = x - 0.3;
+        double dy = y - 0.4;
+        double gradientX = mirrored && y < 0.5 ? 1 - x : x;
+        int gray = dx * dx + dy * dy < 0.04 ? 230 : (int) (40 + 120 * (gradientX + y) / 2);
+        gray = Math.min(255, gray + noise);
+        return 0xFF000000 | gray << 16 | gray << 8 | gray;
+    }
+}
@@ -0,0 +1,190 @@
+package com.forman.limo;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class ExportManifestTest {
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        Path sourceDir = Files.createTempDirectory("limo-src");
+        Path targetDir = Files.createTempDirectory("limo-dst");
+        Path sourceFile = sourceDir.resolve("P8080034.jpg");
+        Files.write(sourceFile, new byte[200 * 1024]);
+        Path targetFile = targetDir.resolve("IMAG01.jpg");
+        Files.copy(sourceFile, targetFile);
+
+        assertFalse(ExportManifest.exists(targetDir));
+        ExportManifest manifest = new ExportManifest(targetDir);
+        manifest.put("IMAG01.jpg", ExportManifest.createEntry(sourceFile, targetFile));
+        manifest.save();
+        assertTrue(ExportManifest.exists(targetDir));
+
+        ExportManifest.Entry entry = ExportManifest.load(targetDir).get("IMAG01.jpg");
+        assertNotNull(entry);
+        assertEquals(sourceFile, entry.sourceFile);
+        assertEquals(200 * 1024, entry.size);
+        assertTrue(ExportManifest.isUpToDate(entry));
+        assertTrue(ExportManifest.isTargetUpToDate(entry, targetFile));
+
+        // Touched, but not changed
+        Files.setLastModifiedTime(sourceFile, FileTime.fromMillis(entry.lastModified + 10000));
+        assertTrue(ExportManifest.isUpToDate(entry));
+
+        // Edited in the middle, same size
+        byte[] data = new byte[200 * 1024];
+        data[data.length / 2] = 1;
+        Files.write(sourceFile, data);
+        Files.setLastModifiedTime(sourceFile, FileTime.fromMillis(entry.lastModified + 20000));
+        assertFalse(ExportManifest.isUpToDate(entry));
+
+        data = new byte[200 * 1024];
+        data[data.length - 1] = 1;
+        Files.write(sourceFile, data);
+        Files.setLastModifiedTime(sourceFile, FileTime.fromMillis(entry.lastModified + 30000));
+        assertFalse(ExportManifest.isUpToDate(entry));
+
+        Files.delete(sourceFile);
+        assertFalse(ExportManifest.isUpToDate(entry));
+
+        // Exported file replaced by one of the same size
+        Files.write(targetFile, data);
+        Files.setLastModifiedTime(targetFile, FileTime.fromMillis(entry.targetLastModified + 10000));
+        assertFalse(ExportManifest.isTargetUpToDate(entry, targetFile));
+
+        Files.delete(targetFile);
+        assertFalse(ExportManifest.isTargetUpToDate(entry, targetFile));
+    }
+
+    @Test
+    public void testPlanUpdateKeepsUnchangedFiles() throws Exception {
+        Path[] files = createSourceFiles(4);
+        Path targetDir = Files.createTempDirectory("limo-dst");
+        Map<String, ExportManifest.Entry> entries = export(files, targetDir);
+
+        ExportManifest.UpdatePlan plan = ExportManifest.planUpdate(targetDir, entries, files, getTargetFiles(targetDir, 4));
+        assertEquals(4, plan.keptEntries.size());
+        assertEquals(files[1], plan.keptEntries.get("IMAG_2.jpg").sourceFile);
+        assertTrue(plan.renames.isEmpty());
+        assertTrue(plan.copyIndexes.isEmpty());
+    }
+
+    @Test
+    public void testPlanUpdateSwap() throws Exception {
+        Path[] files = createSourceFiles(4);
+        Path targetDir = Files.createTempDirectory("limo-dst");
+        Map<String, ExportManifest.Entry> entries = export(files, targetDir);
+
+        Path[] newFiles = {files[1], files[0], files[2], files[3]};
+        ExportManifest.UpdatePlan plan = ExportManifest.planUpdate(targetDir, entries, newFiles, getTargetFiles(targetDir, 4));
+        assertEquals(2, plan.keptEntries.size());
+        assertEquals(map(0, "IMAG_2.jpg", 1, "IMAG_1.jpg"), plan.renames);
+        assertTrue(plan.copyIndexes.isEmpty());
+    }
+
+    @Test
+    public void testPlanUpdateCycle() throws Exception {
+        Path[] files = createSourceFiles(4);
+        Path targetDir = Files.createTempDirectory("limo-dst");
+        Map<String, ExportManifest.Entry> entries = export(files, targetDir);
+
+        Path[] newFiles = {files[1], files[2], files[0], files[3]};
+        ExportManifest.UpdatePlan plan = ExportManifest.planUpdate(targetDir, entries, newFiles, getTargetFiles(targetDir, 4));
+        assertEquals(Collections.singleton("IMAG_4.jpg"), plan.keptEntries.keySet());
+        assertEquals(map(0, "IMAG_2.jpg", 1, "IMAG_3.jpg", 2, "IMAG_1.jpg"), plan.renames);
+        assertTrue(plan.copyIndexes.isEmpty());
+    }
+
+    @Test
+    public void testPlanUpdateChainOntoFreeName() throws Exception {
+        Path[] files = createSourceFiles(4);
+        Path targetDir = Files.createTempDirectory("limo-dst");
+        Map<String, ExportManifest.Entry> entries = export(Arrays.copyOfRange(files, 1, 4), targetDir);
+
+        // A file inserted in front shifts all exported files by one
+        ExportManifest.UpdatePlan plan = ExportManifest.planUpdate(targetDir, entries, files, getTargetFiles(targetDir, 4));
+        assertTrue(plan.keptEntries.isEmpty());
+        assertEquals(map(1, "IMAG_1.jpg", 2, "IMAG_2.jpg", 3, "IMAG_3.jpg"), plan.renames);
+        assertEquals(Collections.singletonList(0), plan.copyIndexes);
+    }
+
+    @Test
+    public void testPlanUpdateDeletedTarget() throws Exception {
+        Path[] files = createSourceFiles(4);
+        Path targetDir = Files.createTempDirectory("limo-dst");
+        Map<String, ExportManifest.Entry> entries = export(files, targetDir);
+        Files.delete(targetDir.resolve("IMAG_2.jpg"));
+
+        Path[] newFiles = {files[1], files[0], files[2], files[3]};
+        ExportManifest.UpdatePlan plan = ExportManifest.planUpdate(targetDir, entries, newFiles, getTargetFiles(targetDir, 4));
+        assertEquals(2, plan.keptEntries.size());
+        assertEquals(map(1, "IMAG_1.jpg"), plan.renames);
+        assertEquals(Collections.singletonList(0), plan.copyIndexes);
+    }
+
+    @Test
+    public void testPlanUpdateChangedSource() throws Exception {
+        Path[] files = createSourceFiles(4);
+        Path targetDir = Files.createTempDirectory("limo-dst");
+        Map<String, ExportManifest.Entry> entries = export(files, targetDir);
+        byte[] data = Files.readAllBytes(files[2]);
+        data[data.length / 2]++;
+        Files.write(files[2], data);
+        Files.setLastModifiedTime(files[2], FileTime.fromMillis(entries.get("IMAG_3.jpg").lastModified + 10000));
+
+        ExportManifest.UpdatePlan plan = ExportManifest.planUpdate(targetDir, entries, files, getTargetFiles(targetDir, 4));
+        assertEquals(3, plan.keptEntries.size());
+        assertFalse(plan.keptEntries.containsKey("IMAG_3.jpg"));
+        assertTrue(plan.renames.isEmpty());
+        assertEquals(Collections.singletonList(2), plan.copyIndexes);
+    }
+
+    private static Path[] createSourceFiles(int count) throws Exception {
+        Path sourceDir = Files.createTempDirectory("limo-src");
+        Path[] files = new Path[count];
+        for (int i = 0; i < count; i++) {
+            byte[] data = new byte[1000];
+            Arrays.fill(data, (byte) i);
+            files[i] = sourceDir.resolve("P808003" + i + ".jpg");
+            Files.write(files[i], data);
+        }
+        return files;
+    }
+
+    private static Path[] getTargetFiles(Path targetDir, int count) {
+        Path[] targetFiles = new Path[count];
+        for (int i = 0; i < count; i++) {
+            targetFiles[i] = targetDir.resolve("IMAG_" + (i + 1) + ".jpg");
+        }
+        return targetFiles;
+    }
+
+    private static Map<String, ExportManifest.Entry> export(Path[] files, Path targetDir) throws Exception {
+        Map<String, ExportManifest.Entry> entries = new HashMap<>();
+        Path[] targetFiles = getTargetFiles(targetDir, files.length);
+        for (int i = 0; i < files.length; i++) {
+            Files.copy(files[i], targetFiles[i]);
+            entries.put(targetFiles[i].getFileName().toString(), ExportManifest.createEntry(files[i], targetFiles[i]));
+        }
+        return entries;
+    }
+
+    private static Map<Integer, String> map(Object... keysAndValues) {
+        Map<Integer, String> map = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put((Integer) keysAndValues[i], (String) keysAndValues[i + 1]);
+        }
+        return map;
+    }
+}
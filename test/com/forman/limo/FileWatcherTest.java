@@ -0,0 +1,77 @@
+package com.forman.limo;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+
+public class FileWatcherTest {
+    @Test
+    public void testChangedFilesAreReportedOnce() throws Exception {
+        Path dir = Files.createTempDirectory("limo-watch");
+        Path file1 = dir.resolve("IMG_0001.jpg");
+        Path file2 = dir.resolve("IMG_0002.jpg");
+        Path file3 = dir.resolve("notes.txt");
+        Files.write(file1, new byte[100]);
+        Files.write(file2, new byte[100]);
+        Files.write(file3, new byte[100]);
+
+        LinkedBlockingQueue<Set<Path>> reports = new LinkedBlockingQueue<>();
+        try (FileWatcher fileWatcher = new FileWatcher(reports::add, 10, 200)) {
+            fileWatcher.setFiles(Arrays.asList(file1, file2));
+            waitForWatchedDirectories(fileWatcher, 1);
+
+            // Several writes in a row, as done by editors
+            Files.write(file1, new byte[200]);
+            Files.write(file1, new byte[300]);
+            Files.write(file3, new byte[200]);
+            assertEquals(Collections.singleton(file1), reports.poll(10, TimeUnit.SECONDS));
+            assertNull(reports.poll(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testWatchedDirectoriesAreBounded() throws Exception {
+        Path dir1 = Files.createTempDirectory("limo-watch");
+        Path dir2 = Files.createTempDirectory("limo-watch");
+        Path file1 = dir1.resolve("IMG_0001.jpg");
+        Path file2 = dir1.resolve("IMG_0002.jpg");
+        Path file3 = dir2.resolve("IMG_0003.jpg");
+        Files.write(file1, new byte[100]);
+        Files.write(file2, new byte[100]);
+        Files.write(file3, new byte[100]);
+
+        LinkedBlockingQueue<Set<Path>> reports = new LinkedBlockingQueue<>();
+        try (FileWatcher fileWatcher = new FileWatcher(reports::add, 1, 200)) {
+            // The directory with the most files wins
+            fileWatcher.setFiles(Arrays.asList(file1, file2, file3));
+            waitForWatchedDirectories(fileWatcher, 1);
+            Files.write(file3, new byte[200]);
+            Files.write(file2, new byte[200]);
+            assertEquals(Collections.singleton(file2), reports.poll(10, TimeUnit.SECONDS));
+
+            // Unless another directory has been touched
+            fileWatcher.touch(file3);
+            Thread.sleep(1000);
+            assertEquals(1, fileWatcher.getWatchedDirectoryCount());
+            Files.write(file2, new byte[300]);
+            Files.write(file3, new byte[300]);
+            assertEquals(Collections.singleton(file3), reports.poll(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private static void waitForWatchedDirectories(FileWatcher fileWatcher, int count) throws InterruptedException {
+        for (int i = 0; i < 100 && fileWatcher.getWatchedDirectoryCount() < count; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(count, fileWatcher.getWatchedDirectoryCount());
+    }
+}
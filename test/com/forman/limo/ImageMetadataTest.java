@@ -0,0 +1,54 @@
+package com.forman.limo;
+
+import com.drew.lang.Rational;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.forman.limo.data.ImageMetadata;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class ImageMetadataTest {
+    @Test
+    public void testIt() throws Exception {
+        ImageMetadata metadata1 = ImageMetadata.of(createMetadata("2016:08:08 12:34:56", 3000));
+        ImageMetadata metadata2 = ImageMetadata.of(createMetadata("2016:08:09 07:00:00", 800));
+
+        assertEquals("2016:08:08 12:34:56", metadata1.getDisplayValue("Exif SubIFD", "Date/Time Original", "?"));
+        assertEquals("3000", metadata1.getDisplayValue("Exif SubIFD", "Exif Image Width", "?"));
+        assertEquals("1/250", metadata1.getDisplayValue("Exif SubIFD", "Exposure Time", "?"));
+        assertEquals("not a date", metadata1.getDisplayValue("Exif IFD0", "Date/Time", "?"));
+        assertEquals("[1000 bytes]", metadata1.getDisplayValue("Exif SubIFD", "Makernote", "?"));
+        assertEquals("?", metadata1.getDisplayValue("Exif SubIFD", "Image Description", "?"));
+
+        // Sorted by directory and tag name
+        for (int i = 1; i < metadata1.size(); i++) {
+            int d = metadata1.getDirectoryName(i - 1).compareTo(metadata1.getDirectoryName(i));
+            assertTrue(d < 0 || d == 0 && metadata1.getTagName(i - 1).compareTo(metadata1.getTagName(i)) < 0);
+        }
+
+        int dateIndex1 = metadata1.indexOf("Exif SubIFD", "Date/Time Original");
+        int dateIndex2 = metadata2.indexOf("Exif SubIFD", "Date/Time Original");
+        assertTrue(ImageMetadata.compareValues(metadata1, dateIndex1, metadata2, dateIndex2) < 0);
+        // Numerically, not by string
+        int widthIndex1 = metadata1.indexOf("Exif SubIFD", "Exif Image Width");
+        int widthIndex2 = metadata2.indexOf("Exif SubIFD", "Exif Image Width");
+        assertTrue(ImageMetadata.compareValues(metadata1, widthIndex1, metadata2, widthIndex2) > 0);
+    }
+
+    private static Metadata createMetadata(String dateTime, int width) {
+        Metadata metadata = new Metadata();
+        ExifSubIFDDirectory subIFDDirectory = new ExifSubIFDDirectory();
+        subIFDDirectory.setString(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL, dateTime);
+        subIFDDirectory.setInt(ExifSubIFDDirectory.TAG_EXIF_IMAGE_WIDTH, width);
+        subIFDDirectory.setRational(ExifSubIFDDirectory.TAG_EXPOSURE_TIME, new Rational(1, 250));
+        subIFDDirectory.setByteArray(ExifSubIFDDirectory.TAG_MAKERNOTE, new byte[1000]);
+        metadata.addDirectory(subIFDDirectory);
+        ExifIFD0Directory ifd0Directory = new ExifIFD0Directory();
+        ifd0Directory.setString(ExifIFD0Directory.TAG_DATETIME, "not a date");
+        metadata.addDirectory(ifd0Directory);
+        return metadata;
+    }
+}
@@ -3,12 +3,15 @@ package com.forman.limo;
 import com.forman.limo.actions.MoveUpAction;
 import com.forman.limo.actions.MoveDownAction;
 import com.forman.limo.data.Project;
+import javafx.collections.ListChangeListener;
 import junit.framework.TestCase;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MoveTest extends TestCase {
     public void testMoveUp() throws Exception {
@@ -81,6 +84,42 @@ public class MoveTest extends TestCase {
         ), project.imageFiles);
     }
 
+    public void testMoveLargeSelection() throws Exception {
+        Project project = new Project();
+        ArrayList<Path> files = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            files.add(Paths.get("im" + i + ".jpg"));
+        }
+        project.imageFiles.addAll(files);
+        ArrayList<Path> selectedFiles = new ArrayList<>();
+        for (int i = 500; i < 1000; i += 3) {
+            selectedFiles.add(files.get(i));
+        }
+        AtomicInteger changeCount = new AtomicInteger();
+        project.imageFiles.addListener((ListChangeListener<Path>) change -> {
+            changeCount.incrementAndGet();
+            assertTrue(change.next());
+            assertTrue(change.wasPermutated());
+        });
+
+        MoveUpAction action = new MoveUpAction(project, selectedFiles, true);
+        action.call();
+
+        assertEquals(1, changeCount.get());
+        ArrayList<Path> oldFiles = new ArrayList<>(files);
+        // Same result as moving the files one by one
+        for (Path file : selectedFiles) {
+            int index = files.indexOf(file);
+            files.remove(index);
+            files.add(index - 500, file);
+        }
+        assertListEquals(files, project.imageFiles);
+
+        action.undo();
+        assertEquals(2, changeCount.get());
+        assertListEquals(oldFiles, project.imageFiles);
+    }
+
     private void assertListEquals(List<Path> expected, List<Path> actual) {
         assertEquals(expected.size(), actual.size());
         for (int i = 0; i < actual.size(); i++) {
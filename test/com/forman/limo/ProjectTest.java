@@ -1,9 +1,29 @@
 package com.forman.limo;
 
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.forman.limo.actions.DeleteAction;
+import com.forman.limo.actions.SortyByAction;
+import com.forman.limo.data.ContentHashIndex;
+import com.forman.limo.data.ImageItem;
+import com.forman.limo.data.ImageMetadata;
 import com.forman.limo.data.Project;
+import javafx.collections.ListChangeListener;
 import junit.framework.TestCase;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class ProjectTest extends TestCase {
     public void testIO() throws Exception {
@@ -42,4 +62,228 @@ public class ProjectTest extends TestCase {
         assertTrue(filenameExtensions.contains("png"));
         assertTrue(filenameExtensions.contains("gif"));
     }
+
+    public void testUpdate() throws Exception {
+        Project project = new Project();
+        AtomicInteger changeCount = new AtomicInteger();
+        project.imageFiles.addListener((ListChangeListener<Path>) change -> changeCount.incrementAndGet());
+
+        project.addFiles(Arrays.asList(Paths.get("test/img-01.png"), Paths.get("test/img-02.png"), Paths.get("test/img-01.png")));
+        assertEquals(1, changeCount.get());
+        assertEquals(2, project.imageFiles.size());
+
+        project.update(() -> {
+            project.addFile("test/img-03.png");
+            project.imageFiles.remove(0);
+            project.imageFiles.add(project.imageFiles.remove(0));
+        });
+        assertEquals(2, changeCount.get());
+        assertEquals(Paths.get("test/img-03.png").toAbsolutePath(), project.imageFiles.get(0));
+        assertEquals(Paths.get("test/img-02.png").toAbsolutePath(), project.imageFiles.get(1));
+    }
+
+    public void testImageFileIndex() throws Exception {
+        Project project = new Project();
+        ArrayList<Path> files = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            files.add(Paths.get("test/img-" + i + ".png").toAbsolutePath());
+        }
+        project.addFiles(files);
+        assertEquals(7, project.getImageFileIndex(files.get(7)));
+        assertEquals(-1, project.getImageFileIndex(Paths.get("test/missing.png").toAbsolutePath()));
+
+        project.imageFiles.remove(2);
+        assertEquals(6, project.getImageFileIndex(files.get(7)));
+        assertEquals(-1, project.getImageFileIndex(files.get(2)));
+
+        project.imageFiles.add(0, files.get(2));
+        project.imageFiles.sort(Comparator.reverseOrder());
+        for (int i = 0; i < project.imageFiles.size(); i++) {
+            assertEquals(i, project.getImageFileIndex(project.imageFiles.get(i)));
+        }
+        assertEquals(Arrays.asList(0, 9), project.getImageFileIndexes(Arrays.asList(files.get(0), files.get(9))));
+    }
+
+    public void testDeleteAndSortUndo() throws Exception {
+        Project project = new Project();
+        ArrayList<Path> files = new ArrayList<>();
+        for (int i = 9; i >= 0; i--) {
+            files.add(Paths.get("test/img-" + i + ".png").toAbsolutePath());
+        }
+        project.addFiles(files);
+
+        DeleteAction deleteAction = new DeleteAction(project, Arrays.asList(files.get(7), files.get(0), files.get(3)));
+        deleteAction.call();
+        assertEquals(7, project.imageFiles.size());
+        assertEquals(-1, project.getImageFileIndex(files.get(3)));
+        deleteAction.undo();
+        assertEquals(files, new ArrayList<>(project.imageFiles));
+
+        SortyByAction sortAction = new SortyByAction(project, SortyByAction.FILENAME);
+        sortAction.call();
+        assertEquals(files.get(9), project.imageFiles.get(0));
+        assertEquals(files.get(0), project.imageFiles.get(9));
+        sortAction.undo();
+        assertEquals(files, new ArrayList<>(project.imageFiles));
+    }
+
+    public void testSortByDateTime() throws Exception {
+        Project project = new Project();
+        ArrayList<Path> files = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            files.add(Paths.get("test/img-" + i + ".png").toAbsolutePath());
+        }
+        project.addFiles(files);
+        String[] dateTimes = {"2016:08:09 07:00:00", null, "2016:08:08 12:34:56", "2016:08:09 07:00:00"};
+        for (int i = 0; i < 4; i++) {
+            Metadata metadata = new Metadata();
+            if (dateTimes[i] != null) {
+                ExifSubIFDDirectory directory = new ExifSubIFDDirectory();
+                directory.setString(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL, dateTimes[i]);
+                metadata.addDirectory(directory);
+            }
+            project.imageItems.put(files.get(i), new ImageItem(files.get(i), null, ImageMetadata.of(metadata)));
+        }
+
+        // By date/time, then by file name, files without date/time last
+        new SortyByAction(project, SortyByAction.DATE_TIME_ORIGINAL).call();
+        assertEquals(Arrays.asList(files.get(2), files.get(0), files.get(3), files.get(1)), new ArrayList<>(project.imageFiles));
+    }
+
+    public void testSortIsStable() throws Exception {
+        Project project = new Project();
+        List<Path> files = Arrays.asList(
+                Paths.get("test/b/img.png").toAbsolutePath(),
+                Paths.get("test/img.png").toAbsolutePath(),
+                Paths.get("test/a/img.png").toAbsolutePath(),
+                Paths.get("test/a/aaa.png").toAbsolutePath());
+        project.addFiles(files);
+
+        // Files with equal names keep their order
+        new SortyByAction(project, SortyByAction.FILENAME).call();
+        assertEquals(Arrays.asList(files.get(3), files.get(0), files.get(1), files.get(2)), new ArrayList<>(project.imageFiles));
+    }
+
+    public void testMetadataIndex() throws Exception {
+        Path dir = Files.createTempDirectory("limo-album");
+        ArrayList<Path> files = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Path file = dir.resolve("img-" + i + ".jpg");
+            Files.write(file, new byte[]{(byte) i});
+            files.add(file);
+        }
+        Project project1 = new Project();
+        project1.addFiles(files);
+        for (Path file : files) {
+            Metadata metadata = new Metadata();
+            ExifSubIFDDirectory directory = new ExifSubIFDDirectory();
+            directory.setString(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL, "2016:08:08 12:34:56");
+            directory.setInt(ExifSubIFDDirectory.TAG_EXIF_IMAGE_WIDTH, 3000);
+            directory.setString(ExifSubIFDDirectory.TAG_MAKE, "Olympus");
+            metadata.addDirectory(directory);
+            project1.imageItems.put(file, new ImageItem(file, null, ImageMetadata.of(metadata).recordFileState(file)));
+        }
+        // Metadata of unknown origin is not indexed
+        Path file2 = dir.resolve("img-2.jpg");
+        Files.write(file2, new byte[]{2});
+        project1.addFile(file2);
+        project1.imageItems.put(file2, new ImageItem(file2, null, ImageMetadata.of(new Metadata())));
+        String albumFile = dir.resolve("test.limo").toString();
+        project1.saveAs(albumFile);
+
+        Project project2 = new Project();
+        project2.open(albumFile);
+        ImageMetadata metadata = project2.getImageItem(files.get(0)).metadata;
+        assertEquals("2016:08:08 12:34:56", metadata.getDisplayValue("Exif SubIFD", "Date/Time Original", "?"));
+        assertEquals("3000", metadata.getDisplayValue("Exif SubIFD", "Exif Image Width", "?"));
+        // Not indexed
+        assertEquals("?", metadata.getDisplayValue("Exif SubIFD", "Make", "?"));
+        assertNull(project2.getImageItem(file2).metadata);
+
+        // Changed files must be read again
+        Files.setLastModifiedTime(files.get(1), FileTime.fromMillis(Files.getLastModifiedTime(files.get(1)).toMillis() + 10000));
+        Project project3 = new Project();
+        project3.open(albumFile);
+        assertTrue(project3.getImageItem(files.get(0)).metadata.isUpToDate(files.get(0)));
+        assertFalse(project3.getImageItem(files.get(1)).metadata.isUpToDate(files.get(1)));
+    }
+
+    public void testFileListFormat() throws Exception {
+        Path dir = Files.createTempDirectory("limo-album");
+        ArrayList<Path> files = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            files.add(dir.resolve("dir-" + (i % 7)).resolve("img-" + i + ".jpg"));
+        }
+        files.add(Paths.get("/other/img.jpg").toAbsolutePath());
+        for (boolean relativizePaths : new boolean[]{true, false}) {
+            Project project1 = new Project();
+            project1.relativizePaths.set(relativizePaths);
+            project1.addFiles(files);
+            String albumFile = dir.resolve("test.limo").toString();
+            project1.saveAs(albumFile);
+
+            Project project2 = new Project();
+            project2.open(albumFile);
+            assertEquals(files.size(), project2.imageFiles.size());
+            for (int i = 0; i < files.size(); i++) {
+                assertEquals(files.get(i), project2.imageFiles.get(i).normalize());
+            }
+        }
+    }
+
+    public void testOpenVersion1() throws Exception {
+        Path dir = Files.createTempDirectory("limo-album");
+        Path albumFile = dir.resolve("test.limo");
+        try (ZipOutputStream zout = new ZipOutputStream(Files.newOutputStream(albumFile))) {
+            zout.putNextEntry(new ZipEntry("settings.properties"));
+            zout.write("version=1\ntargetDirName=out\n".getBytes(StandardCharsets.ISO_8859_1));
+            zout.closeEntry();
+            zout.putNextEntry(new ZipEntry("filelist.txt"));
+            zout.write("img-01.png\nimages/img-02.png\n".getBytes());
+            zout.closeEntry();
+        }
+        Project project = new Project();
+        project.open(albumFile.toString());
+        assertEquals("out", project.targetDirName.get());
+        assertEquals(Arrays.asList(dir.resolve("img-01.png"), dir.resolve("images/img-02.png")), new ArrayList<>(project.imageFiles));
+    }
+
+    public void testContentHashIndex() throws Exception {
+        Path dir = Files.createTempDirectory("limo-album");
+        byte[] data = new byte[200 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + i / 1000);
+        }
+        Path file = dir.resolve("IMG_0001.jpg");
+        Files.write(file, data);
+        Project project1 = new Project();
+        project1.addFiles(Arrays.asList(file));
+
+        Path copyDir = Files.createDirectory(dir.resolve("copy"));
+        Path copy = Files.write(copyDir.resolve("IMG_0001.jpg"), data);
+        // Same size, head and tail as the file, differs in the middle only
+        data[100 * 1024] ^= 1;
+        Path changed = Files.write(copyDir.resolve("IMG_0002.jpg"), data);
+        data[100 * 1024] ^= 1;
+        Path copy2 = Files.write(copyDir.resolve("IMG_0003.jpg"), data);
+        Path other = Files.write(copyDir.resolve("IMG_0004.jpg"), new byte[]{1, 2, 3});
+
+        ContentHashIndex.Filter filter = project1.contentHashIndex.newFilter(project1.imageFiles);
+        // Files already in the album are passed, they are not added twice anyway
+        assertEquals(Arrays.asList(changed, file, other), filter.filter(Arrays.asList(copy, changed, file, other)));
+        assertEquals(Arrays.asList(), filter.filter(Arrays.asList(copy2)));
+        assertEquals(2, filter.getSkippedCount());
+
+        String albumFile = dir.resolve("test.limo").toString();
+        project1.saveAs(albumFile);
+
+        // The hashes of the album's file are not read again while its size and modification time are unchanged
+        FileTime lastModified = Files.getLastModifiedTime(file);
+        data[100 * 1024] ^= 1;
+        Files.write(file, data);
+        Files.setLastModifiedTime(file, lastModified);
+        Project project2 = new Project();
+        project2.open(albumFile);
+        assertEquals(Arrays.asList(), project2.contentHashIndex.newFilter(project2.imageFiles).filter(Arrays.asList(copy)));
+    }
 }
@@ -24,4 +24,31 @@ public class StringReplacerTest {
 
         assertEquals("PIC0000327_P8080034_DxO", StringReplacer.replace("PIC{000000N}_{NAME}", 327, new HashMap<String, String>(){{put("{NAME}", "P8080034_DxO");}}));
     }
+
+    @Test
+    public void testTokens() throws Exception {
+        HashMap<String, String> R = new HashMap<>();
+        R.put("{NAME}", "a$1\\b");
+        assertEquals("a$1\\b-3", StringReplacer.replace("{NAME}-{n}", 3, R));
+        assertEquals("IMAG{X}8{}", StringReplacer.replace("IMAG{X}{N}{}", 8, R));
+        assertEquals("{{N}", StringReplacer.replace("{{N}", 8, R));
+        assertEquals("{0n}", StringReplacer.replace("{0n}", 8, R));
+        assertEquals("IMAG", StringReplacer.replace("IMAG", 8, R));
+    }
+
+    @Test
+    public void testTemplate() throws Exception {
+        StringReplacer.Template template = StringReplacer.compile("PIC{0000N}_{NAME}");
+        assertEquals(true, template.usesIndex());
+        assertEquals(true, template.uses("{NAME}"));
+        assertEquals(false, template.uses("{FORMAT}"));
+
+        HashMap<String, String> R = new HashMap<>();
+        R.put("{NAME}", "X");
+        StringBuilder sb = new StringBuilder("..");
+        template.render(12, R, sb);
+        assertEquals("..PIC00012_X", sb.toString());
+        assertEquals("PIC123456_X", template.render(123456, R));
+        assertEquals(false, StringReplacer.compile("IMAG").usesIndex());
+    }
 }
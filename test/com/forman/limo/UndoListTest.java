@@ -1,9 +1,16 @@
 package com.forman.limo;
 
 import com.forman.limo.actions.AbstractUndoableAction;
+import com.forman.limo.actions.AddAction;
 import com.forman.limo.actions.UndoList;
+import com.forman.limo.data.Project;
 import junit.framework.TestCase;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
 public class UndoListTest extends TestCase {
     public void testZero() throws Exception {
         UndoList actionList = new UndoList();
@@ -84,12 +91,112 @@ public class UndoListTest extends TestCase {
         assertEquals("call;undo;redo;", actionC.trace);
     }
 
+    public void testBudget() throws Exception {
+        UndoList actionList = new UndoList(3, 100);
+
+        TestAction actionA = new TestAction("A", 10);
+        TestAction actionB = new TestAction("B", 10);
+        TestAction actionC = new TestAction("C", 10);
+        TestAction actionD = new TestAction("D", 10);
+        for (TestAction action : new TestAction[]{actionA, actionB, actionC, actionD}) {
+            action.call();
+            actionList.add(action);
+        }
+        assertEquals(3, actionList.size());
+        assertEquals(30, actionList.getMemorySize());
+
+        actionList.undo();
+        actionList.undo();
+        actionList.undo();
+        assertEquals(false, actionList.canUndo());
+        assertEquals("call;", actionA.trace);
+        assertEquals("call;undo;", actionB.trace);
+
+        actionList.redo();
+        actionList.redo();
+        actionList.redo();
+        TestAction actionE = new TestAction("E", 90);
+        actionE.call();
+        actionList.add(actionE);
+        assertEquals(2, actionList.size());
+        assertEquals(100, actionList.getMemorySize());
+
+        // The most recent action is kept even if it exceeds the budget
+        TestAction actionF = new TestAction("F", 200);
+        actionF.call();
+        actionList.add(actionF);
+        assertEquals(1, actionList.size());
+        actionList.undo();
+        assertEquals(false, actionList.canUndo());
+        assertEquals("call;undo;", actionF.trace);
+    }
+
+    public void testBudgetChanges() throws Exception {
+        UndoList actionList = new UndoList(3, 100);
+        TestAction actionA = new TestAction("A", 10);
+        TestAction actionB = new TestAction("B", 10);
+        TestAction actionC = new TestAction("C", 10);
+        for (TestAction action : new TestAction[]{actionA, actionB, actionC}) {
+            action.call();
+            actionList.add(action);
+        }
+        actionList.setMaxActionCount(2);
+        assertEquals(2, actionList.size());
+
+        // The most recent action has grown
+        actionC.memorySize = 95;
+        actionList.trim();
+        assertEquals(1, actionList.size());
+
+        actionList.setMaxMemorySize(1000);
+        actionList.setMaxActionCount(10);
+        assertEquals(1, actionList.size());
+    }
+
+    public void testAddUndoRedo() throws Exception {
+        Path file1 = Paths.get("im1.jpg").toAbsolutePath();
+        Path file2 = Paths.get("im2.jpg").toAbsolutePath();
+        Path file3 = Paths.get("im3.jpg").toAbsolutePath();
+        Project project = new Project();
+        project.addFile(file1);
+        UndoList actionList = new UndoList();
+
+        // Files already in the album are not part of the action
+        AddAction addAction = new AddAction(project, Arrays.asList(file1, file2, file3));
+        assertEquals(Boolean.TRUE, addAction.call());
+        actionList.add(addAction);
+        assertEquals(Arrays.asList(file1, file2, file3), project.imageFiles);
+
+        actionList.undo();
+        assertEquals(Collections.singletonList(file1), project.imageFiles);
+        actionList.redo();
+        assertEquals(Arrays.asList(file1, file2, file3), project.imageFiles);
+        actionList.undo();
+        assertEquals(Collections.singletonList(file1), project.imageFiles);
+
+        // Files removed by undo can be added again
+        AddAction addAction2 = new AddAction(project, Collections.singletonList(file3));
+        assertEquals(Boolean.TRUE, addAction2.call());
+        assertEquals(Arrays.asList(file1, file3), project.imageFiles);
+    }
+
     private static class TestAction extends AbstractUndoableAction {
         private final String name;
+        private long memorySize;
         String trace = "";
 
         public TestAction(String name) {
+            this(name, 0);
+        }
+
+        public TestAction(String name, long memorySize) {
             this.name = name;
+            this.memorySize = memorySize;
+        }
+
+        @Override
+        public long getMemorySize() {
+            return memorySize;
         }
 
         @Override